@@ -0,0 +1,42 @@
+#!/usr/bin/env bash
+# Runs the k6 scenario in perf/k6/threads.js against the application on platform threads, then on
+# virtual threads, with the same load, and keeps both k6 summaries in perf/results/.
+#
+# Requires Java 21, k6 and the database settings of the main README in the environment. Extra
+# arguments are passed to k6, e.g. ./perf/compare-threads.sh -e RATE=400 -e DURATION=5m
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RESULTS=perf/results
+PORT=${SERVER_PORT:-8080}
+mkdir -p "$RESULTS"
+
+./mvnw -q -Pjava21 -DskipTests package
+JAR=$(ls target/*.jar | grep -v -- '-plain' | head -n 1)
+
+for mode in platform virtual; do
+  enabled=$([ "$mode" = virtual ] && echo true || echo false)
+  VIRTUAL_THREADS_ENABLED=$enabled java -jar "$JAR" --server.port="$PORT" \
+    > "$RESULTS/app-$mode.log" 2>&1 &
+  app=$!
+  trap 'kill $app 2>/dev/null' EXIT
+
+  until curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; do
+    if ! kill -0 $app 2>/dev/null; then
+      echo "Application failed to start, see $RESULTS/app-$mode.log"
+      exit 1
+    fi
+    sleep 1
+  done
+
+  # Warm-up run (JIT, caches, connection pool), then the measured run
+  k6 run --quiet -e BASE_URL="http://localhost:$PORT" -e DURATION=30s "$@" perf/k6/threads.js \
+    > /dev/null
+  k6 run -e BASE_URL="http://localhost:$PORT" --summary-export "$RESULTS/$mode.json" "$@" \
+    perf/k6/threads.js | tee "$RESULTS/$mode.txt"
+
+  kill $app
+  wait $app 2>/dev/null || true
+done
+
+echo "Summaries written to $RESULTS/platform.txt and $RESULTS/virtual.txt"
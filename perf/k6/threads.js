@@ -0,0 +1,85 @@
+// Load scenario comparing Tomcat on platform threads and on virtual threads (see perf/README.md).
+//
+// Mixes the blocking paths of a typical session at a fixed arrival rate, so that both modes get
+// the same offered load and differ only in throughput, latency and dropped iterations:
+//   - browsing: rental page and rental details (JDBC, response cache),
+//   - messaging: sending a message about a rental (JDBC or batched ingestion),
+//   - login: password verification (CPU-bound hashing).
+//
+// Environment: BASE_URL (default http://localhost:8080), RATE (browsing iterations per second,
+// default 200), DURATION (default 2m), RENTAL_ID (default 1, must exist).
+
+import http from 'k6/http';
+import { check, fail } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const RATE = Number(__ENV.RATE || 200);
+const DURATION = __ENV.DURATION || '2m';
+const RENTAL_ID = __ENV.RENTAL_ID || '1';
+
+const EMAIL = 'load-test@example.com';
+const PASSWORD = 'load-test-password';
+const JSON_HEADERS = { 'Content-Type': 'application/json' };
+
+function scenario(exec, rate) {
+  return {
+    executor: 'constant-arrival-rate',
+    exec,
+    rate,
+    timeUnit: '1s',
+    duration: DURATION,
+    preAllocatedVUs: Math.max(10, rate),
+    maxVUs: Math.max(50, rate * 10),
+  };
+}
+
+export const options = {
+  scenarios: {
+    browsing: scenario('browse', RATE),
+    messaging: scenario('sendMessage', Math.max(1, Math.round(RATE / 10))),
+    login: scenario('login', Math.max(1, Math.round(RATE / 50))),
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+function authenticate() {
+  const response = http.post(`${BASE_URL}/api/auth/login`,
+    JSON.stringify({ email: EMAIL, password: PASSWORD }), { headers: JSON_HEADERS });
+  check(response, { 'login succeeded': (r) => r.status === 200 });
+  return response.json('token');
+}
+
+export function setup() {
+  // Registering again answers an error once the user exists, which is fine
+  http.post(`${BASE_URL}/api/auth/register`,
+    JSON.stringify({ email: EMAIL, name: 'Load Test', password: PASSWORD }),
+    { headers: JSON_HEADERS });
+  const token = authenticate();
+  if (!token) {
+    fail(`Cannot log in to ${BASE_URL}`);
+  }
+  return { token };
+}
+
+function authorized(token) {
+  return { headers: { ...JSON_HEADERS, Authorization: `Bearer ${token}` } };
+}
+
+export function browse(data) {
+  const params = authorized(data.token);
+  check(http.get(`${BASE_URL}/api/rentals/page`, params),
+    { 'page 200': (r) => r.status === 200 });
+  check(http.get(`${BASE_URL}/api/rentals/${RENTAL_ID}`, params),
+    { 'rental 200': (r) => r.status === 200 });
+}
+
+export function sendMessage(data) {
+  const response = http.post(`${BASE_URL}/api/messages`,
+    JSON.stringify({ rental_id: Number(RENTAL_ID), message: 'Is it still available?' }),
+    authorized(data.token));
+  check(response, { 'message accepted': (r) => r.status === 200 });
+}
+
+export function login() {
+  authenticate();
+}
@@ -22,6 +22,13 @@ import java.lang.annotation.Target;
     content = @Content(
       mediaType = "application/json",
       schema = @Schema(example = "{}"))
+  ),
+  @ApiResponse(
+    responseCode = "503",
+    description = "Too many concurrent authentication requests, retry after the Retry-After delay",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(example = "{}"))
   )
 })
 public @interface PostUnsecuredErrorResponses {
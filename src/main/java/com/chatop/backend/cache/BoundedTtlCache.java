@@ -0,0 +1,328 @@
+package com.chatop.backend.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded in-memory cache with per-entry expiration. Entries are spread across independently
+ * locked segments (lock striping) so that lookups of different keys rarely contend. Each segment
+ * keeps its entries in least-recently-used order and evicts the eldest one once it is full.
+ * <p>
+ * Read-through loads are guarded against invalidation races: a value loaded while the key's segment
+ * was invalidated is returned to the caller but not stored, so a stale value never lands in the
+ * cache after an invalidation.
+ * <p>
+ * Hit, miss, and eviction counts are tracked and can be published to Micrometer using the standard
+ * {@code cache.*} meter names.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BoundedTtlCache<K, V> {
+
+  /**
+   * Number of independently locked segments (power of two so the index is a simple mask)
+   */
+  private static final int SEGMENT_COUNT = 16;
+
+  private final Segment<K, V>[] segments;
+  private final long ttlMillis;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a cache holding at most {@code maxSize} entries, each for at most {@code ttl}.
+   *
+   * @param maxSize maximum number of entries kept across all segments
+   * @param ttl     maximum time an entry stays valid after being stored
+   */
+  @SuppressWarnings("unchecked")
+  public BoundedTtlCache(int maxSize, Duration ttl) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive");
+    }
+    this.ttlMillis = ttl.toMillis();
+    // Round up so that the total capacity is never below the requested size
+    int segmentCapacity = (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+    this.segments = new Segment[SEGMENT_COUNT];
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment<>(segmentCapacity);
+    }
+  }
+
+  /**
+   * Returns the cached value for a key, or null if it is absent or expired.
+   *
+   * @param key the cache key
+   * @return the cached value, or null on a miss
+   */
+  public V get(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    long now = System.currentTimeMillis();
+    segment.lock.lock();
+    try {
+      Entry<V> entry = segment.entries.get(key);
+      if (entry == null) {
+        misses.increment();
+        return null;
+      }
+      if (entry.expiresAtMillis <= now) {
+        // Expired entries are dropped lazily on access
+        segment.entries.remove(key);
+        evictions.increment();
+        misses.increment();
+        return null;
+      }
+      hits.increment();
+      return entry.value;
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  /**
+   * Stores a value for the configured time-to-live.
+   *
+   * @param key   the cache key
+   * @param value the value to cache (must not be null)
+   */
+  public void put(K key, V value) {
+    put(key, value, Long.MAX_VALUE);
+  }
+
+  /**
+   * Stores a value until the given instant or the configured time-to-live, whichever comes first.
+   *
+   * @param key             the cache key
+   * @param value           the value to cache (must not be null)
+   * @param expiresAtMillis absolute expiration time in epoch milliseconds
+   */
+  public void put(K key, V value, long expiresAtMillis) {
+    Segment<K, V> segment = segmentFor(key);
+    segment.lock.lock();
+    try {
+      store(segment, key, value, expiresAtMillis);
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the cached value for a key, loading and caching it on a miss. If the key's segment is
+   * invalidated while the loader runs, the loaded value is returned but not cached, since it may
+   * predate the change that triggered the invalidation. Null results are never cached.
+   *
+   * @param key    the cache key
+   * @param loader function loading the value for a key (may return null)
+   * @return the cached or freshly loaded value, or null if the loader found nothing
+   */
+  public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+    return getOrLoad(key, loader, Long.MAX_VALUE);
+  }
+
+  /**
+   * Same as {@link #getOrLoad(Object, Function)}, but a loaded value is only cached until the
+   * given instant or the configured time-to-live, whichever comes first.
+   *
+   * @param key             the cache key
+   * @param loader          function loading the value for a key (may return null)
+   * @param expiresAtMillis absolute expiration time of a loaded value in epoch milliseconds
+   * @return the cached or freshly loaded value, or null if the loader found nothing
+   */
+  public V getOrLoad(K key, Function<? super K, ? extends V> loader, long expiresAtMillis) {
+    V cached = get(key);
+    if (cached != null) {
+      return cached;
+    }
+
+    Segment<K, V> segment = segmentFor(key);
+    // Snapshot the generation before loading so concurrent invalidations can be detected
+    long generation = segment.generation;
+    V loaded = loader.apply(key);
+    if (loaded == null) {
+      return null;
+    }
+
+    segment.lock.lock();
+    try {
+      if (segment.generation == generation) {
+        store(segment, key, loaded, expiresAtMillis);
+      }
+    } finally {
+      segment.lock.unlock();
+    }
+    return loaded;
+  }
+
+  /**
+   * Removes a single key from the cache.
+   *
+   * @param key the key to remove
+   */
+  public void invalidate(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    segment.lock.lock();
+    try {
+      segment.entries.remove(key);
+      segment.generation++;
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  /**
+   * Removes every key matching the predicate. Walks all segments, so it is meant for infrequent
+   * invalidations rather than the request path.
+   *
+   * @param keyFilter predicate selecting the keys to remove
+   */
+  public void invalidateIf(Predicate<K> keyFilter) {
+    for (Segment<K, V> segment : segments) {
+      segment.lock.lock();
+      try {
+        segment.entries.keySet().removeIf(keyFilter);
+        segment.generation++;
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public void invalidateAll() {
+    invalidateIf(key -> true);
+  }
+
+  /**
+   * Returns the current number of entries, including expired ones not yet dropped.
+   *
+   * @return the number of cached entries
+   */
+  public long size() {
+    long size = 0;
+    for (Segment<K, V> segment : segments) {
+      segment.lock.lock();
+      try {
+        size += segment.entries.size();
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+    return size;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the fraction of lookups served from the cache since startup.
+   *
+   * @return hit ratio between 0 and 1 (0 when no lookup has happened yet)
+   */
+  public double getHitRatio() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return total == 0 ? 0.0 : (double) hitCount / total;
+  }
+
+  /**
+   * Publishes the cache statistics to Micrometer under the standard cache meter names, tagged with
+   * the given cache name.
+   *
+   * @param registry the meter registry
+   * @param name     the cache name used as the {@code cache} tag
+   */
+  public void bindMetrics(MeterRegistry registry, String name) {
+    FunctionCounter.builder("cache.gets", this, BoundedTtlCache::getHitCount)
+      .tags("cache", name, "result", "hit")
+      .register(registry);
+    FunctionCounter.builder("cache.gets", this, BoundedTtlCache::getMissCount)
+      .tags("cache", name, "result", "miss")
+      .register(registry);
+    FunctionCounter.builder("cache.puts", this, cache -> cache.puts.sum())
+      .tags("cache", name)
+      .register(registry);
+    FunctionCounter.builder("cache.evictions", this, BoundedTtlCache::getEvictionCount)
+      .tags("cache", name)
+      .register(registry);
+    Gauge.builder("cache.size", this, BoundedTtlCache::size)
+      .tags("cache", name)
+      .register(registry);
+  }
+
+  /**
+   * Stores an entry and evicts least recently used ones beyond the segment capacity. Must be
+   * called while holding the segment lock.
+   */
+  private void store(Segment<K, V> segment, K key, V value, long expiresAtMillis) {
+    long now = System.currentTimeMillis();
+    long expiresAt = Math.min(expiresAtMillis, now + ttlMillis);
+    if (expiresAt <= now) {
+      return;
+    }
+
+    segment.entries.put(key, new Entry<>(value, expiresAt));
+    puts.increment();
+    // Evict least recently used entries once the segment exceeds its share of the capacity
+    Iterator<Entry<V>> eldest = segment.entries.values().iterator();
+    while (segment.entries.size() > segment.capacity && eldest.hasNext()) {
+      eldest.next();
+      eldest.remove();
+      evictions.increment();
+    }
+  }
+
+  private Segment<K, V> segmentFor(K key) {
+    int hash = key.hashCode();
+    // Spread high bits into the low bits used for segment selection
+    hash ^= (hash >>> 16);
+    return segments[hash & (SEGMENT_COUNT - 1)];
+  }
+
+  /**
+   * One lock-protected LRU partition of the cache.
+   */
+  private static final class Segment<K, V> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int capacity;
+    // Access-ordered map: iteration starts at the least recently used entry
+    private final Map<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Incremented on every invalidation; read without the lock by loaders taking a snapshot
+    private volatile long generation;
+
+    private Segment(int capacity) {
+      this.capacity = capacity;
+    }
+  }
+
+  /**
+   * Cached value along with its absolute expiration time.
+   */
+  private record Entry<V>(V value, long expiresAtMillis) {
+
+  }
+}
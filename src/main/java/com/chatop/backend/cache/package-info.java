@@ -0,0 +1,10 @@
+/**
+ * In-memory caching utilities shared by the security and service layers.
+ * <p>
+ * Caches in this package are bounded in size and entry lifetime so they can sit on hot request
+ * paths without growing the heap indefinitely. They expose hit, miss, and eviction statistics
+ * through Micrometer.
+ * <p>
+ * Example: {@link com.chatop.backend.cache.BoundedTtlCache}.
+ */
+package com.chatop.backend.cache;
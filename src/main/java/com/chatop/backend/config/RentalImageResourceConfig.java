@@ -3,6 +3,7 @@ package com.chatop.backend.config;
 import java.nio.file.Paths;
 import java.util.concurrent.TimeUnit;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
@@ -12,10 +13,25 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  * Configures serving of uploaded rental images as static resources.
  * Maps the local upload directory to a URL path, enabling browser caching
  * and access to uploaded files without application restart.
+ * Content-addressed images (stored under two levels of two-character
+ * shard directories) never change, so they are cached for a year and
+ * marked immutable.
+ * Only active with the local image store in "resource" serving mode; by
+ * default, local images are served by
+ * {@link com.chatop.backend.controller.RentalImageController}, and other
+ * stores serve images through
+ * {@link com.chatop.backend.controller.RentalImageRedirectController}.
  */
 @Configuration
+@ConditionalOnExpression(
+  "'${app.upload.store:local}' == 'local' and '${app.upload.serving.mode:direct}' == 'resource'")
 public class RentalImageResourceConfig implements WebMvcConfigurer {
 
+  /**
+   * Cache lifetime of content-addressed images, whose URL changes whenever the content does
+   */
+  private static final long IMMUTABLE_CACHE_DAYS = 365;
+
   @Value("${app.upload.dir}")
   private String uploadDir;
 
@@ -31,7 +47,14 @@ public class RentalImageResourceConfig implements WebMvcConfigurer {
     String absolutePath = Paths.get(uploadDir).toAbsolutePath().normalize().toUri().toString();
 
     // Ensure URL pattern ends with /** for wildcard matching
-    String urlPattern = uploadUrl.endsWith("/") ? uploadUrl + "**" : uploadUrl + "/**";
+    String urlBase = uploadUrl.endsWith("/") ? uploadUrl : uploadUrl + "/";
+    String urlPattern = urlBase + "**";
+
+    // Content-addressed images (ab/cd/<hash>.ext); more specific, so matched before the default
+    registry.addResourceHandler(urlBase + "??/??/**")
+      .addResourceLocations(absolutePath)
+      .setCacheControl(
+        CacheControl.maxAge(IMMUTABLE_CACHE_DAYS, TimeUnit.DAYS).cachePublic().immutable());
 
     // Register resource handler with caching
     registry.addResourceHandler(urlPattern)
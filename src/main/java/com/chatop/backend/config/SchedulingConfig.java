@@ -0,0 +1,13 @@
+package com.chatop.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables scheduled background jobs, such as the orphaned rental image sweeper.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+}
@@ -1,8 +1,13 @@
 package com.chatop.backend.config;
 
+import com.chatop.backend.security.BCryptStrengthCalibrator;
 import com.chatop.backend.security.JwtAuthenticationFilter;
 import com.chatop.backend.security.JwtService;
+import com.chatop.backend.security.PrincipalCache;
 import com.chatop.backend.service.AuthService;
+import jakarta.servlet.DispatcherType;
+import java.time.Duration;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -11,7 +16,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -23,6 +30,12 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+  /**
+   * Identifiers of the supported password hashing algorithms, as stored in hash prefixes
+   */
+  private static final String BCRYPT = "bcrypt";
+  private static final String ARGON2 = "argon2";
+
   private final JwtService jwtService;
 
   // Controls whether Swagger is publicly accessible, injected from application properties.
@@ -33,13 +46,15 @@ public class SecurityConfig {
    * Registers the {@link JwtAuthenticationFilter} bean used to validate JWT tokens and populate the
    * authentication context. Declared separately to avoid circular dependencies.
    *
-   * @param authService service used to retrieve user details for token validation. Injected lazily
-   *                    to break circular reference.
+   * @param authService    service used to retrieve user details for token validation. Injected
+   *                       lazily to break circular reference.
+   * @param principalCache cache of users already resolved from verified tokens
    * @return a configured {@link JwtAuthenticationFilter} instance
    */
   @Bean
-  public JwtAuthenticationFilter jwtAuthFilter(AuthService authService) {
-    return new JwtAuthenticationFilter(jwtService, authService);
+  public JwtAuthenticationFilter jwtAuthFilter(AuthService authService,
+    PrincipalCache principalCache) {
+    return new JwtAuthenticationFilter(jwtService, authService, principalCache);
   }
 
   /**
@@ -66,8 +81,13 @@ public class SecurityConfig {
       // Authorization rules
       .authorizeHttpRequests(auth -> {
         auth
-          // Allow unauthenticated access to registration and login
-          .requestMatchers("/api/auth/register", "/api/auth/login").permitAll()
+          // Async dispatches only finish requests authorized when they started (streamed rentals,
+          // message streams); the JWT is not evaluated again on them
+          .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
+          // Allow unauthenticated access to registration, login, and refresh token endpoints
+          .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/refresh",
+            "/api/auth/logout").permitAll()
 
           // Allow access to uploaded images (public resources)
           .requestMatchers("/rental_images/**").permitAll()
@@ -106,14 +126,39 @@ public class SecurityConfig {
     return httpSecurity.build();
   }
 
-
   /**
-   * Provides a BCrypt password encoder bean for hashing passwords.
+   * Provides the password encoder. Hashes are stored with an algorithm prefix (such as
+   * {@code {bcrypt}}) so the algorithm and its cost can change without locking users out: existing
+   * hashes still verify, and {@link PasswordEncoder#upgradeEncoding} reports those to re-hash on
+   * the user's next successful login. Hashes stored before prefixes were introduced are verified
+   * as BCrypt.
    *
-   * @return BCryptPasswordEncoder instance
+   * @param algorithm      algorithm for new hashes, "bcrypt" or "argon2"
+   * @param bcryptStrength BCrypt work factor, or 0 to calibrate it on startup
+   * @param targetMillis   hash time targeted by the calibration, in milliseconds
+   * @return the delegating password encoder
+   * @throws IllegalArgumentException if the algorithm is not supported
    */
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  public PasswordEncoder passwordEncoder(
+    @Value("${app.auth.password.algorithm}") String algorithm,
+    @Value("${app.auth.password.bcrypt-strength}") int bcryptStrength,
+    @Value("${app.auth.password.target-ms}") long targetMillis) {
+    BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength > 0
+      ? bcryptStrength
+      : BCryptStrengthCalibrator.calibrate(Duration.ofMillis(targetMillis)));
+
+    Map<String, PasswordEncoder> encoders = Map.of(
+      BCRYPT, bcrypt,
+      ARGON2, Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8()
+    );
+    if (!encoders.containsKey(algorithm)) {
+      throw new IllegalArgumentException("Unsupported password algorithm: " + algorithm);
+    }
+
+    DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(algorithm, encoders);
+    // Hashes stored without a prefix were all produced by BCrypt
+    passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+    return passwordEncoder;
   }
 }
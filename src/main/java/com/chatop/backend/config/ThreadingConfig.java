@@ -0,0 +1,40 @@
+package com.chatop.backend.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Reports whether requests run on virtual or platform threads. Virtual threads are switched on
+ * with {@code spring.threads.virtual.enabled}, which Spring Boot silently ignores on runtimes older
+ * than Java 21, so a mismatch is logged at startup.
+ * <p>
+ * Work that must stay on bounded platform threads keeps its own executor: image processing
+ * ({@link com.chatop.backend.service.RentalImagePipeline}) is CPU-bound and would only contend
+ * for carrier threads.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class ThreadingConfig {
+
+  private final Environment environment;
+
+  /**
+   * Logs the threading mode on startup.
+   */
+  @PostConstruct
+  void reportThreadingMode() {
+    boolean requested = environment.getProperty(
+      "spring.threads.virtual.enabled", Boolean.class, false);
+    if (Threading.VIRTUAL.isActive(environment)) {
+      log.info("Handling requests on virtual threads");
+    } else if (requested) {
+      log.warn("Virtual threads requested but running on Java {}; using platform threads "
+        + "(Java 21 is required)", Runtime.version().feature());
+    }
+  }
+}
@@ -4,11 +4,14 @@ import com.chatop.backend.annotation.GetByIdErrorResponses;
 import com.chatop.backend.annotation.PostUnsecuredErrorResponses;
 import com.chatop.backend.dto.LoginRequest;
 import com.chatop.backend.dto.LoginResponse;
+import com.chatop.backend.dto.RefreshRequest;
 import com.chatop.backend.dto.RegisterRequest;
 import com.chatop.backend.dto.UserResponse;
+import com.chatop.backend.exception.ServiceOverloadedException;
 import com.chatop.backend.model.User;
 import com.chatop.backend.security.JwtService;
 import com.chatop.backend.service.AuthService;
+import com.chatop.backend.service.RefreshTokenService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -17,7 +20,6 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
-import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -29,20 +31,22 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
- * REST controller for authentication endpoints. Handles user registration, login, and JWT-protected
- * user information retrieval.
+ * REST controller for authentication endpoints. Handles user registration, login, access token
+ * refresh, logout, and JWT-protected user information retrieval.
  */
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
 @Tag(
   name = "Authentication",
-  description = "Endpoints for user registration, login, and JWT-protected user retrieval"
+  description = "Endpoints for user registration, login, token refresh, and JWT-protected user "
+    + "retrieval"
 )
 public class AuthController {
 
   private final AuthService authService;
   private final JwtService jwtService;
+  private final RefreshTokenService refreshTokenService;
 
   /**
    * Registers a new user. Note: Passwords are encoded before storage. Email uniqueness is
@@ -87,11 +91,12 @@ public class AuthController {
   }
 
   /**
-   * Authenticates a user and returns a JWT token.
+   * Authenticates a user and returns a short-lived JWT access token and a refresh token.
    *
    * @param request the login request containing email and password
-   * @return ResponseEntity with LoginResponse containing the JWT token
-   * @throws RuntimeException if credentials are invalid
+   * @return ResponseEntity with LoginResponse containing the tokens
+   * @throws RuntimeException           if credentials are invalid
+   * @throws ServiceOverloadedException if too many logins are being verified
    */
   @Operation(
     summary = "Authenticate a user",
@@ -118,16 +123,80 @@ public class AuthController {
         throw new RuntimeException("Invalid credentials");
       }
 
-      // Generate JWT token
-      String token = jwtService.generateToken(Map.of(), user.getEmail());
+      // Move the stored hash to the current algorithm and cost while the password is at hand
+      authService.upgradePasswordEncoding(user, request.password());
 
-      // Return the token in a DTO
-      return ResponseEntity.ok(new LoginResponse(token));
+      // Generate a short-lived access token and start a refresh token family
+      String token = jwtService.generateAccessToken(user);
+      String refreshToken = refreshTokenService.issue(user);
+
+      // Return the tokens in a DTO
+      return ResponseEntity.ok(new LoginResponse(token, refreshToken));
+    } catch (ServiceOverloadedException e) {
+      // Not a credentials problem: let the global handler answer 503
+      throw e;
     } catch (RuntimeException e) {
-      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new LoginResponse(null));
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new LoginResponse(null, null));
     }
   }
 
+  /**
+   * Exchanges a refresh token for a new access token and a new refresh token. Each refresh token
+   * can only be used once; using one again revokes every token issued since the login.
+   *
+   * @param request the request containing the refresh token
+   * @return ResponseEntity with LoginResponse containing the new tokens, or 401 if the refresh
+   * token is invalid, expired, or already used
+   */
+  @Operation(
+    summary = "Refresh the access token",
+    description = "Exchanges a refresh token for a new access token and refresh token. "
+      + "Accessible without authentication."
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "Tokens refreshed successfully",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(implementation = LoginResponse.class)
+    ))
+  @ApiResponse(
+    responseCode = "401",
+    description = "Invalid, expired, or already used refresh token",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(example = "{}")
+    ))
+  @PostUnsecuredErrorResponses
+  @PostMapping("/refresh")
+  public ResponseEntity<LoginResponse> refresh(@Valid @RequestBody RefreshRequest request) {
+    return refreshTokenService.rotate(request.refreshToken())
+      .map(rotated -> ResponseEntity.ok(new LoginResponse(
+        jwtService.generateAccessToken(rotated.user()), rotated.refreshToken())))
+      .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+        .body(new LoginResponse(null, null)));
+  }
+
+  /**
+   * Logs out by revoking a refresh token and every token rotated from the same login. Access
+   * tokens already issued remain valid until they expire.
+   *
+   * @param request the request containing the refresh token
+   * @return ResponseEntity with no content
+   */
+  @Operation(
+    summary = "Log out",
+    description = "Revokes the refresh token and the session it belongs to. "
+      + "Accessible without authentication."
+  )
+  @ApiResponse(responseCode = "204", description = "Session revoked")
+  @PostUnsecuredErrorResponses
+  @PostMapping("/logout")
+  public ResponseEntity<Void> logout(@Valid @RequestBody RefreshRequest request) {
+    refreshTokenService.revoke(request.refreshToken());
+    return ResponseEntity.noContent().build();
+  }
+
   /**
    * Returns the information of the currently authenticated user.
    *
@@ -156,13 +225,20 @@ public class AuthController {
         .body(new UserResponse(null, null, null, null, null));
     }
 
+    // The principal only carries the token's identity claims, so load the full user
+    User storedUser = authService.findByEmail(user.getEmail()).orElse(null);
+    if (storedUser == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+        .body(new UserResponse(null, null, null, null, null));
+    }
+
     // Convert entity to DTO
     UserResponse response = new UserResponse(
-      user.getId(),
-      user.getName(),
-      user.getEmail(),
-      user.getCreatedAt(),
-      user.getUpdatedAt()
+      storedUser.getId(),
+      storedUser.getName(),
+      storedUser.getEmail(),
+      storedUser.getCreatedAt(),
+      storedUser.getUpdatedAt()
     );
 
     return ResponseEntity.ok(response);
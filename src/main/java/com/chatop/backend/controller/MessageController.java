@@ -1,11 +1,16 @@
 package com.chatop.backend.controller;
 
+import com.chatop.backend.annotation.GetAllErrorResponses;
 import com.chatop.backend.annotation.PostSecuredErrorResponses;
+import com.chatop.backend.dto.MessageItemResponse;
+import com.chatop.backend.dto.MessagePageResponse;
 import com.chatop.backend.dto.MessageRequest;
 import com.chatop.backend.dto.StatusMessageResponse;
 import com.chatop.backend.model.User;
 import com.chatop.backend.service.MessageService;
+import com.chatop.backend.service.MessageStreamService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -14,28 +19,36 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * REST controller for handling message operations. Allows authenticated users to send messages
- * related to rentals.
+ * related to rentals and to read the messages received about their own rentals, either page by page
+ * or as they arrive.
  */
 @RestController
 @RequestMapping("/api/messages")
 @RequiredArgsConstructor
 @Tag(
   name = "Messages",
-  description = "Endpoints for sending messages about rentals"
+  description = "Endpoints for sending and reading messages about rentals"
 )
 public class MessageController {
 
   private final MessageService messageService;
 
+  private final MessageStreamService messageStreamService;
+
   /**
    * Creates a new message associated with a rental. The authenticated user is automatically set as
    * the sender.
@@ -60,6 +73,13 @@ public class MessageController {
         example = "{\"message\": \"Message sent with success\"}"
       )
     ))
+  @ApiResponse(
+    responseCode = "503",
+    description = "Message queue full (batched ingestion), retry after the Retry-After delay",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(example = "{}")
+    ))
   @PostSecuredErrorResponses
   @PostMapping
   public ResponseEntity<StatusMessageResponse> sendMessage(
@@ -74,7 +94,7 @@ public class MessageController {
 
     try {
       // Delegate message processing to service layer for business logic
-      StatusMessageResponse response = messageService.sendMessage(request, user.getId());
+      StatusMessageResponse response = messageService.sendMessage(request, user);
       // Return 200 OK with the created message response
       return ResponseEntity.ok(response);
     } catch (IllegalArgumentException e) {
@@ -83,4 +103,97 @@ public class MessageController {
     }
   }
 
+  /**
+   * Retrieves one page of the messages received about all of the authenticated user's rentals,
+   * newest first. Clients pass the returned cursor back to fetch the following page.
+   *
+   * @param cursor cursor returned with the previous page (omit for the first page)
+   * @param size   number of messages per page (defaults to the configured page size)
+   * @param user   the authenticated user (inferred from JWT)
+   * @return the requested page of messages and the cursor to the next one
+   */
+  @Operation(
+    summary = "Get the messages received about the user's rentals",
+    description = "Returns the messages about every rental owned by the authenticated user, "
+      + "newest first, using cursor-based pagination.",
+    security = @SecurityRequirement(name = "bearerAuth")
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "Page of messages retrieved successfully",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(implementation = MessagePageResponse.class)
+    ))
+  @ApiResponse(
+    responseCode = "400",
+    description = "Invalid cursor or page size",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(example = "{}")
+    ))
+  @GetAllErrorResponses
+  @GetMapping("/inbox")
+  public ResponseEntity<MessagePageResponse> getInbox(
+    @RequestParam(required = false) String cursor,
+    @RequestParam(required = false) Integer size,
+    @Parameter(hidden = true) @AuthenticationPrincipal User user
+  ) {
+    // Additional safety check, though Spring Security should handle this
+    if (user == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+
+    return ResponseEntity.ok(messageService.getInbox(user.getId(), cursor, size));
+  }
+
+  /**
+   * Opens a Server-Sent Events stream of the messages received about the authenticated user's
+   * rentals. Each {@code message} event carries the message ID as its event ID, so clients that
+   * reconnect with {@code Last-Event-ID} get the messages they missed first (along with some they
+   * may already have, to be ignored by ID).
+   *
+   * @param lastEventId ID of the last message received, sent by clients when reconnecting
+   * @param user        the authenticated user (inferred from JWT)
+   * @return the event stream
+   */
+  @Operation(
+    summary = "Stream the messages received about the user's rentals",
+    description = "Server-Sent Events stream pushing each new message about a rental owned by "
+      + "the authenticated user as a \"message\" event. Reconnecting with Last-Event-ID "
+      + "replays missed messages, and possibly some already received (ignore known IDs); a "
+      + "\"resync\" event means too many were missed and the inbox should be reloaded.",
+    security = @SecurityRequirement(name = "bearerAuth")
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "Event stream opened",
+    content = @Content(
+      mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+      schema = @Schema(implementation = MessageItemResponse.class)
+    ))
+  @ApiResponse(
+    responseCode = "503",
+    description = "Too many open streams, retry after the Retry-After delay",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(example = "{}")
+    ))
+  @GetAllErrorResponses
+  @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamMessages(
+    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+    @Parameter(hidden = true) @AuthenticationPrincipal User user
+  ) {
+    // Additional safety check, though Spring Security should handle this
+    if (user == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+
+    return ResponseEntity.ok()
+      // Keep reverse proxies such as nginx from buffering the stream
+      .header("X-Accel-Buffering", "no")
+      .body(messageStreamService.subscribe(user.getId(), lastEventId));
+  }
+
 }
@@ -4,13 +4,18 @@ import com.chatop.backend.annotation.GetAllErrorResponses;
 import com.chatop.backend.annotation.GetByIdErrorResponses;
 import com.chatop.backend.annotation.PostSecuredErrorResponses;
 import com.chatop.backend.annotation.PutErrorResponses;
+import com.chatop.backend.dto.MessagePageResponse;
 import com.chatop.backend.dto.RentalCreateRequest;
 import com.chatop.backend.dto.RentalListResponse;
+import com.chatop.backend.dto.RentalPageResponse;
 import com.chatop.backend.dto.RentalUpdateRequest;
 import com.chatop.backend.dto.SingleRentalResponse;
 import com.chatop.backend.dto.StatusMessageResponse;
 import com.chatop.backend.model.User;
+import com.chatop.backend.repository.RentalVersion;
+import com.chatop.backend.service.MessageService;
 import com.chatop.backend.service.RentalService;
+import com.chatop.backend.service.VersionedRental;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -21,6 +26,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -29,10 +35,17 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller for rental-related endpoints. Handles retrieving and managing rental listings.
+ * Read endpoints support conditional requests: responses carry a strong ETag and Last-Modified
+ * derived from {@code updated_at}, and matching {@code If-None-Match} / {@code If-Modified-Since}
+ * requests get a 304. Listings answer them from a version query, without loading any rental; a
+ * single rental answers them from the cached response, whose version is cached with it.
  */
 @RestController
 @RequestMapping("/api/rentals")
@@ -43,13 +56,21 @@ import org.springframework.web.bind.annotation.RestController;
 )
 public class RentalController {
 
+  /**
+   * Entity tag scope for the rentals collection (listing endpoints)
+   */
+  private static final String COLLECTION_ETAG_SCOPE = "rentals";
+
   private final RentalService rentalService;
 
+  private final MessageService messageService;
+
   /**
    * Retrieves all available rentals. Requires a valid JWT token.
    *
-   * @param user the authenticated user entity provided by Spring Security
-   * @return list of all rentals wrapped in a response DTO
+   * @param user       the authenticated user entity provided by Spring Security
+   * @param webRequest the current request, used to evaluate conditional headers
+   * @return list of all rentals wrapped in a response DTO, or 304 if unchanged
    */
   @Operation(
     summary = "Get all rentals",
@@ -63,25 +84,189 @@ public class RentalController {
       mediaType = "application/json",
       schema = @Schema(implementation = RentalListResponse.class)
     ))
+  @ApiResponse(responseCode = "304", description = "Rentals unchanged since last request")
   @GetAllErrorResponses
   @GetMapping
   public ResponseEntity<RentalListResponse> getAllRentals(
-    @Parameter(hidden = true) @AuthenticationPrincipal User user
+    @Parameter(hidden = true) @AuthenticationPrincipal User user,
+    WebRequest webRequest
   ) {
     // Explicit null check safety measure (Spring Security handles authentication)
     if (user == null) {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
     }
 
+    // Answer conditional requests before loading any rental
+    RentalVersion version = rentalService.getCollectionVersion();
+    String etag = version.etag(COLLECTION_ETAG_SCOPE);
+    if (webRequest.checkNotModified(etag, version.lastModifiedMillis())) {
+      return notModified(etag, version);
+    }
+
     RentalListResponse response = rentalService.getAllRentals();
-    return ResponseEntity.ok(response);
+    return withValidators(ResponseEntity.ok(), etag, version).body(response);
+  }
+
+  /**
+   * Streams all rentals in the same JSON shape as {@link #getAllRentals(User, WebRequest)},
+   * selected with {@code ?stream=true}. The body is written row by row from a database cursor, so
+   * memory usage does not grow with the number of rentals. Requires a valid JWT token.
+   *
+   * @param user       the authenticated user entity provided by Spring Security
+   * @param webRequest the current request, used to evaluate conditional headers
+   * @return a streaming body writing the full list of rentals, or 304 if unchanged
+   */
+  @Operation(
+    summary = "Stream all rentals",
+    description = "Returns the list of all rentals, streamed as it is read from the database. "
+      + "Selected with stream=true. Requires authentication.",
+    security = @SecurityRequirement(name = "bearerAuth")
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "List of rentals streamed successfully",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(implementation = RentalListResponse.class)
+    ))
+  @ApiResponse(responseCode = "304", description = "Rentals unchanged since last request")
+  @GetAllErrorResponses
+  @GetMapping(params = "stream=true")
+  public ResponseEntity<StreamingResponseBody> streamAllRentals(
+    @Parameter(hidden = true) @AuthenticationPrincipal User user,
+    WebRequest webRequest
+  ) {
+    // Explicit null check safety measure (Spring Security handles authentication)
+    if (user == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+
+    // Answer conditional requests before opening the database cursor
+    RentalVersion version = rentalService.getCollectionVersion();
+    String etag = version.etag(COLLECTION_ETAG_SCOPE);
+    if (webRequest.checkNotModified(etag, version.lastModifiedMillis())) {
+      return notModified(etag, version);
+    }
+
+    // Written on an async thread once headers are committed
+    StreamingResponseBody body = rentalService::streamAllRentals;
+    return withValidators(ResponseEntity.ok(), etag, version)
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(body);
+  }
+
+  /**
+   * Retrieves one page of rentals, newest first. Requires a valid JWT token. Clients pass the
+   * returned cursor back to fetch the following page.
+   *
+   * @param cursor     cursor returned with the previous page (omit for the first page)
+   * @param size       number of rentals per page (defaults to the configured page size)
+   * @param user       the authenticated user entity provided by Spring Security
+   * @param webRequest the current request, used to evaluate conditional headers
+   * @return the requested page of rentals and the cursor to the next one, or 304 if unchanged
+   */
+  @Operation(
+    summary = "Get a page of rentals",
+    description = "Returns rentals newest first using cursor-based pagination. "
+      + "Requires authentication.",
+    security = @SecurityRequirement(name = "bearerAuth")
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "Page of rentals retrieved successfully",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(implementation = RentalPageResponse.class)
+    ))
+  @ApiResponse(
+    responseCode = "400",
+    description = "Invalid cursor or page size",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(example = "{}")
+    ))
+  @ApiResponse(responseCode = "304", description = "Rentals unchanged since last request")
+  @GetAllErrorResponses
+  @GetMapping("/page")
+  public ResponseEntity<RentalPageResponse> getRentalPage(
+    @RequestParam(required = false) String cursor,
+    @RequestParam(required = false) Integer size,
+    @Parameter(hidden = true) @AuthenticationPrincipal User user,
+    WebRequest webRequest
+  ) {
+    // Explicit null check safety measure (Spring Security handles authentication)
+    if (user == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+
+    // Any change to the collection may shift page contents, so pages share its validator
+    RentalVersion version = rentalService.getCollectionVersion();
+    String etag = version.etag(COLLECTION_ETAG_SCOPE);
+    if (webRequest.checkNotModified(etag, version.lastModifiedMillis())) {
+      return notModified(etag, version);
+    }
+
+    RentalPageResponse response = rentalService.getRentalPage(cursor, size);
+    return withValidators(ResponseEntity.ok(), etag, version).body(response);
+  }
+
+  /**
+   * Searches rentals by name and description, best matches first. Requires a valid JWT token.
+   *
+   * @param q    the words to search for (accents and letter case are ignored, and the last word
+   *             also matches the longer words it begins)
+   * @param size maximum number of rentals to return (defaults to the configured page size)
+   * @param user the authenticated user entity provided by Spring Security
+   * @return the matching rentals, best first
+   */
+  @Operation(
+    summary = "Search rentals",
+    description = "Returns the rentals whose name or description contains every word of the "
+      + "query, best matches first. Requires authentication.",
+    security = @SecurityRequirement(name = "bearerAuth")
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "Matching rentals retrieved successfully",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(implementation = RentalListResponse.class)
+    ))
+  @ApiResponse(
+    responseCode = "400",
+    description = "Blank query or invalid page size",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(example = "{}")
+    ))
+  @ApiResponse(
+    responseCode = "503",
+    description = "Search index still being built, retry after the Retry-After delay",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(example = "{}")
+    ))
+  @GetAllErrorResponses
+  @GetMapping("/search")
+  public ResponseEntity<RentalListResponse> searchRentals(
+    @RequestParam(required = false) String q,
+    @RequestParam(required = false) Integer size,
+    @Parameter(hidden = true) @AuthenticationPrincipal User user
+  ) {
+    // Explicit null check safety measure (Spring Security handles authentication)
+    if (user == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+
+    return ResponseEntity.ok(rentalService.searchRentals(q, size));
   }
 
   /**
    * Retrieves a rental by its ID. Requires a valid JWT token.
    *
-   * @param id the ID of the rental to retrieve
-   * @return the rental details if found
+   * @param id         the ID of the rental to retrieve
+   * @param webRequest the current request, used to evaluate conditional headers
+   * @return the rental details if found, or 304 if unchanged
    */
   @Operation(
     summary = "Get rental by ID",
@@ -94,17 +279,69 @@ public class RentalController {
       mediaType = "application/json",
       schema = @Schema(implementation = SingleRentalResponse.class)
     ))
+  @ApiResponse(responseCode = "304", description = "Rental unchanged since last request")
   @GetByIdErrorResponses
   @GetMapping("/{id}")
-  public ResponseEntity<SingleRentalResponse> getRentalById(@PathVariable Long id) {
-    SingleRentalResponse rental = rentalService.getRentalById(id);
-
+  public ResponseEntity<SingleRentalResponse> getRentalById(@PathVariable Long id,
+    WebRequest webRequest) {
+    // The validators come with the cached response, so they always match the body served
+    VersionedRental rental = rentalService.getVersionedRental(id);
     if (rental == null) {
       return ResponseEntity.status(HttpStatus.NOT_FOUND)
         .body(new SingleRentalResponse(null, null, null, null, null, null, null, null, null));
     }
 
-    return ResponseEntity.ok(rental);
+    RentalVersion version = rental.version();
+    String etag = version.etag(String.valueOf(id));
+    if (webRequest.checkNotModified(etag, version.lastModifiedMillis())) {
+      return notModified(etag, version);
+    }
+    return withValidators(ResponseEntity.ok(), etag, version).body(rental.response());
+  }
+
+  /**
+   * Retrieves one page of the messages about a rental, newest first. Only the rental's owner may
+   * read them. Clients pass the returned cursor back to fetch the following page.
+   *
+   * @param id     the ID of the rental
+   * @param cursor cursor returned with the previous page (omit for the first page)
+   * @param size   number of messages per page (defaults to the configured page size)
+   * @param user   the authenticated user entity provided by Spring Security
+   * @return the requested page of messages and the cursor to the next one
+   */
+  @Operation(
+    summary = "Get the messages about a rental",
+    description = "Returns the messages about a rental, newest first, using cursor-based "
+      + "pagination. Only the rental's owner may read them.",
+    security = @SecurityRequirement(name = "bearerAuth"))
+  @ApiResponse(
+    responseCode = "200",
+    description = "Page of messages retrieved successfully",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(implementation = MessagePageResponse.class)
+    ))
+  @ApiResponse(
+    responseCode = "400",
+    description = "Invalid cursor or page size",
+    content = @Content(
+      mediaType = "application/json",
+      schema = @Schema(example = "{}")
+    ))
+  @GetByIdErrorResponses
+  @GetMapping("/{id}/messages")
+  public ResponseEntity<MessagePageResponse> getRentalMessages(
+    @PathVariable Long id,
+    @RequestParam(required = false) String cursor,
+    @RequestParam(required = false) Integer size,
+    @Parameter(hidden = true) @AuthenticationPrincipal User user
+  ) {
+    // Explicit null check safety measure (Spring Security handles authentication)
+    if (user == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+
+    return ResponseEntity.ok(messageService.getRentalMessages(id, user.getId(), cursor, size));
   }
 
   /**
@@ -174,4 +411,33 @@ public class RentalController {
     return ResponseEntity.ok(response);
   }
 
+  /**
+   * Builds an empty 304 response repeating the validators of the unchanged resource.
+   *
+   * @param etag    the resource's entity tag
+   * @param version the resource's version
+   * @return a 304 Not Modified response
+   */
+  private static <T> ResponseEntity<T> notModified(String etag, RentalVersion version) {
+    return withValidators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), etag, version).build();
+  }
+
+  /**
+   * Adds the ETag and, when known, the Last-Modified header to a response.
+   *
+   * @param builder the response builder
+   * @param etag    the resource's entity tag
+   * @param version the resource's version
+   * @return the same builder, for chaining
+   */
+  private static ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder builder,
+    String etag, RentalVersion version) {
+    builder.eTag(etag);
+    // An empty collection has no modification time
+    if (version.lastModifiedMillis() >= 0) {
+      builder.lastModified(version.lastModifiedMillis());
+    }
+    return builder;
+  }
+
 }
@@ -0,0 +1,277 @@
+package com.chatop.backend.controller;
+
+import com.chatop.backend.exception.ResourceNotFoundException;
+import com.chatop.backend.service.RentalImageFileService;
+import com.chatop.backend.service.RentalImageTranscoder;
+import com.chatop.backend.service.ServedImage;
+import io.swagger.v3.oas.annotations.Hidden;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves locally stored rental images, replacing the generic static resource handler on this hot
+ * path.
+ * <ul>
+ *   <li>Metadata and strong ETags are precomputed and cached by
+ *   {@link RentalImageFileService}.</li>
+ *   <li>The format is negotiated from the {@code Accept} header by
+ *   {@link RentalImageTranscoder}, which converts images clients cannot display.</li>
+ *   <li>{@code If-None-Match} / {@code If-Modified-Since} are answered with 304 without opening
+ *   the file.</li>
+ *   <li>Single byte ranges ({@code Range: bytes=...}, honoring {@code If-Range}) get a 206 partial
+ *   response.</li>
+ *   <li>Small files are written from memory; larger ones are handed to Tomcat's sendfile, which
+ *   copies them from the page cache to the socket without passing through the JVM heap, with a
+ *   {@link FileChannel#transferTo} fallback when sendfile is unavailable.</li>
+ * </ul>
+ */
+@Hidden
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnExpression(
+  "'${app.upload.store:local}' == 'local' and '${app.upload.serving.mode:direct}' == 'direct'")
+public class RentalImageController {
+
+  /**
+   * Request attributes through which Tomcat offers and performs sendfile
+   */
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  /**
+   * Cache lifetime of content-addressed images, whose URL changes whenever the content does
+   */
+  private static final long IMMUTABLE_CACHE_DAYS = 365;
+
+  private final RentalImageFileService rentalImageFileService;
+
+  private final RentalImageTranscoder rentalImageTranscoder;
+
+  // Base URL path used to serve images, injected from application properties.
+  @Value("${app.upload.url}")
+  private String uploadUrl;
+
+  // Cache duration for served images in seconds, injected from application properties.
+  @Value("${app.upload.cache-seconds}")
+  private long cacheSeconds;
+
+  /**
+   * Serves an image file (GET and HEAD).
+   *
+   * @param request  the current request, whose path (after the upload URL) is the image key
+   * @param response the response the image is written to
+   * @throws IOException if the image cannot be sent
+   */
+  @GetMapping("${app.upload.url}/**")
+  public void serveImage(HttpServletRequest request, HttpServletResponse response)
+    throws IOException {
+    String key = keyOf(request);
+    ServedImage image = rentalImageFileService.find(key)
+      .orElseThrow(() -> new ResourceNotFoundException("Image not found"));
+    image = rentalImageTranscoder.negotiate(image, request.getHeader(HttpHeaders.ACCEPT));
+
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    response.setHeader(HttpHeaders.ETAG, image.etag());
+    response.setDateHeader(HttpHeaders.LAST_MODIFIED, image.lastModified());
+    response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControlFor(image));
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+    if (isNotModified(request, image)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    long start = 0;
+    long end = image.length() - 1;
+    long[] range = requestedRange(request, image);
+    if (range != null) {
+      if (range.length == 0) {
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + image.length());
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        return;
+      }
+      start = range[0];
+      end = range[1];
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setHeader(HttpHeaders.CONTENT_RANGE,
+        "bytes " + start + "-" + end + "/" + image.length());
+    }
+
+    long length = end - start + 1;
+    response.setContentType(image.contentType());
+    response.setContentLengthLong(length);
+    if ("HEAD".equals(request.getMethod())) {
+      return;
+    }
+
+    try {
+      writeBody(request, response, image, start, length);
+    } catch (NoSuchFileException e) {
+      // Deleted since its metadata was cached (e.g. by the orphan sweeper)
+      rentalImageFileService.evict(key);
+      if (response.isCommitted()) {
+        throw e;
+      }
+      response.reset();
+      throw new ResourceNotFoundException("Image not found");
+    }
+  }
+
+  /**
+   * Writes the selected bytes, picking the cheapest way available: memory for small files,
+   * sendfile for large ones, and a channel transfer otherwise.
+   */
+  private void writeBody(HttpServletRequest request, HttpServletResponse response,
+    ServedImage image, long start, long length) throws IOException {
+    byte[] content = rentalImageFileService.cachedContent(image);
+    if (content != null) {
+      response.getOutputStream().write(content, (int) start, (int) length);
+      return;
+    }
+
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      // Tomcat sends the file itself once the request completes
+      request.setAttribute(SENDFILE_FILENAME, image.path().toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, start);
+      request.setAttribute(SENDFILE_END, start + length);
+      return;
+    }
+
+    try (FileChannel channel = FileChannel.open(image.path(), StandardOpenOption.READ)) {
+      OutputStream output = response.getOutputStream();
+      WritableByteChannel target = Channels.newChannel(output);
+      long position = start;
+      long remaining = length;
+      while (remaining > 0) {
+        long transferred = channel.transferTo(position, remaining, target);
+        if (transferred <= 0) {
+          break;
+        }
+        position += transferred;
+        remaining -= transferred;
+      }
+    }
+  }
+
+  /**
+   * Evaluates {@code If-None-Match} (which takes precedence) or {@code If-Modified-Since}.
+   */
+  private static boolean isNotModified(HttpServletRequest request, ServedImage image) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      for (String tag : ifNoneMatch.split(",")) {
+        String candidate = tag.trim();
+        // Weak comparison, as required for If-None-Match
+        if (candidate.startsWith("W/")) {
+          candidate = candidate.substring(2);
+        }
+        if (candidate.equals("*") || candidate.equals(image.etag())) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    try {
+      long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+      // HTTP dates have second precision
+      return ifModifiedSince >= 0 && image.lastModified() / 1000 <= ifModifiedSince / 1000;
+    } catch (IllegalArgumentException e) {
+      // Unparseable date: ignore the header
+      return false;
+    }
+  }
+
+  /**
+   * Parses a single-range {@code Range} header.
+   *
+   * @return null to send the whole file (no range, multiple ranges, stale If-Range, or malformed
+   * header, including a last position before the first), an empty array if the range starts past
+   * the end of the file or asks for an empty suffix, or the inclusive start and end offsets
+   */
+  private static long[] requestedRange(HttpServletRequest request, ServedImage image) {
+    String header = request.getHeader(HttpHeaders.RANGE);
+    if (header == null || !header.startsWith("bytes=") || header.contains(",")) {
+      return null;
+    }
+
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    if (ifRange != null && !ifRange.equals(image.etag())) {
+      // Representation changed (or a date validator was sent): send the whole file
+      return null;
+    }
+
+    String spec = header.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+
+    long length = image.length();
+    try {
+      long start;
+      long end;
+      if (dash == 0) {
+        // Suffix range: the last N bytes
+        long suffixLength = Long.parseLong(spec.substring(1));
+        if (suffixLength <= 0) {
+          return new long[0];
+        }
+        start = Math.max(0, length - suffixLength);
+        end = length - 1;
+      } else {
+        start = Long.parseLong(spec.substring(0, dash));
+        end = dash == spec.length() - 1 ? length - 1 : Long.parseLong(spec.substring(dash + 1));
+        if (start > end) {
+          // Invalid rather than unsatisfiable (RFC 9110, section 14.1.1): ignore the header
+          return null;
+        }
+      }
+
+      if (start >= length) {
+        return new long[0];
+      }
+      return new long[] {start, Math.min(end, length - 1)};
+
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private String cacheControlFor(ServedImage image) {
+    if (!image.cacheable()) {
+      return CacheControl.noStore().getHeaderValue();
+    }
+    CacheControl cacheControl = image.immutable()
+      ? CacheControl.maxAge(IMMUTABLE_CACHE_DAYS, TimeUnit.DAYS).cachePublic().immutable()
+      : CacheControl.maxAge(cacheSeconds, TimeUnit.SECONDS).cachePublic();
+    return cacheControl.getHeaderValue();
+  }
+
+  private String keyOf(HttpServletRequest request) {
+    String prefix = uploadUrl.endsWith("/") ? uploadUrl : uploadUrl + "/";
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    String key = path.startsWith(prefix) ? path.substring(prefix.length()) : "";
+    if (key.isEmpty() || key.contains("..")) {
+      throw new ResourceNotFoundException("Image not found");
+    }
+    return key;
+  }
+}
@@ -0,0 +1,62 @@
+package com.chatop.backend.controller;
+
+import com.chatop.backend.exception.ResourceNotFoundException;
+import com.chatop.backend.storage.RentalImageStore;
+import io.swagger.v3.oas.annotations.Hidden;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves rental image URLs when images live in a remote object store. Instead of streaming the
+ * bytes through the application, each request is redirected to a short-lived presigned URL from
+ * which the client downloads the image directly.
+ */
+@Hidden
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.upload.store", havingValue = "s3")
+public class RentalImageRedirectController {
+
+  private final RentalImageStore rentalImageStore;
+
+  // Base URL path used to serve images, injected from application properties.
+  @Value("${app.upload.url}")
+  private String uploadUrl;
+
+  // Lifetime of presigned URLs in seconds, injected from application properties.
+  @Value("${app.upload.s3.presign-seconds}")
+  private long presignSeconds;
+
+  /**
+   * Redirects an image URL to a presigned download URL for the same key.
+   *
+   * @param request the current request, whose path (after the upload URL) is the image key
+   * @return 302 Found pointing at the presigned URL
+   */
+  @GetMapping("${app.upload.url}/**")
+  public ResponseEntity<Void> redirectToImage(HttpServletRequest request) {
+    String prefix = uploadUrl.endsWith("/") ? uploadUrl : uploadUrl + "/";
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    String key = path.startsWith(prefix) ? path.substring(prefix.length()) : "";
+
+    if (key.isEmpty() || key.contains("..")) {
+      throw new ResourceNotFoundException("Image not found");
+    }
+
+    return rentalImageStore.presignedUrl(key)
+      .map(url -> ResponseEntity.status(HttpStatus.FOUND)
+        .location(url)
+        // Let clients reuse the redirect while the presigned URL is still comfortably valid
+        .cacheControl(CacheControl.maxAge(presignSeconds / 2, TimeUnit.SECONDS).cachePrivate())
+        .<Void>build())
+      .orElseThrow(() -> new ResourceNotFoundException("Image not found"));
+  }
+}
@@ -1,18 +1,22 @@
 package com.chatop.backend.dto;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
- * Response DTO for successful login.
+ * Response DTO for successful login or token refresh.
  *
- * @param token JWT authentication token
+ * @param token        short-lived JWT access token
+ * @param refreshToken single-use token to obtain the next access token
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
-@Schema(description = "Response containing the generated JWT token")
+@Schema(description = "Response containing the generated JWT access token and refresh token")
 public record LoginResponse(
   @Schema(example = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
-  String token
+  String token,
+  @JsonProperty("refresh_token") @Schema(example = "Zq3x0c2V...")
+  String refreshToken
 ) {
 
 }
@@ -0,0 +1,26 @@
+package com.chatop.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * One message returned by the rental messages and inbox endpoints.
+ *
+ * @param id        message ID
+ * @param rentalId  rental the message is about
+ * @param userId    sender user ID
+ * @param userName  sender name
+ * @param message   message content
+ * @param createdAt creation time, formatted as "yyyy/MM/dd HH:mm:ss"
+ */
+@Schema(description = "One message about a rental.")
+public record MessageItemResponse(
+  @Schema(example = "1") Long id,
+  @JsonProperty("rental_id") @Schema(example = "1") Long rentalId,
+  @JsonProperty("user_id") @Schema(example = "2") Long userId,
+  @JsonProperty("user_name") @Schema(example = "Jane Doe") String userName,
+  @Schema(example = "Is the studio still available in June?") String message,
+  @JsonProperty("created_at") @Schema(example = "2025/10/06 12:34:56") String createdAt
+) {
+
+}
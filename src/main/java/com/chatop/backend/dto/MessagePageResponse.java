@@ -0,0 +1,26 @@
+package com.chatop.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated message listing, newest first.
+ *
+ * @param messages   messages on this page
+ * @param nextCursor opaque token to request the following page (null on the last page)
+ */
+@Schema(description = "One page of messages with a cursor to the next page.")
+public record MessagePageResponse(
+  @ArraySchema(
+    arraySchema = @Schema(description = "List of message objects"),
+    schema = @Schema(implementation = MessageItemResponse.class))
+  List<MessageItemResponse> messages,
+  @JsonProperty("next_cursor")
+  @Schema(description = "Cursor for the next page, null when there are no more messages",
+    example = "MjAyNS0xMC0wNlQxMjozNDo1NnwxMg")
+  String nextCursor
+) {
+
+}
@@ -0,0 +1,17 @@
+package com.chatop.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Request DTO for refreshing an access token or logging out.
+ *
+ * @param refreshToken refresh token received at login or at the previous refresh (required)
+ */
+@Schema(description = "Request payload carrying a refresh token")
+public record RefreshRequest(
+  @JsonProperty("refresh_token") @Schema(example = "Zq3x0c2V...") @NotBlank String refreshToken
+) {
+
+}
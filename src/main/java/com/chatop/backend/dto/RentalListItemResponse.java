@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import java.math.BigDecimal;
+import java.util.Map;
 
 /**
  * One rental item in the rentals list.
@@ -13,6 +14,7 @@ import java.math.BigDecimal;
  * @param surface     surface area
  * @param price       price
  * @param picture     picture URL
+ * @param sizes       URLs of the resized picture variants, keyed by width in pixels
  * @param description description text
  * @param ownerId     owner user ID
  * @param createdAt   creation date as string
@@ -26,6 +28,10 @@ public record RentalListItemResponse(
   @Schema(example = "35.5") BigDecimal surface,
   @Schema(example = "699.99") BigDecimal price,
   @Schema(example = "/rental_images/rental_1_1731254789123.jpg") String picture,
+  @Schema(
+    description = "Resized JPEG variants of the picture, keyed by width in pixels",
+    example = "{\"200\": \"/rental_images/rental_1_1731254789123_w200.jpg\"}")
+  Map<Integer, String> sizes,
   @Schema(example = "Close to the city center...") String description,
   @JsonProperty("owner_id") @Schema(example = "1") Long ownerId,
   @JsonProperty("created_at") @Schema(example = "2025/10/6") String createdAt,
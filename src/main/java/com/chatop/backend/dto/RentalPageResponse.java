@@ -0,0 +1,26 @@
+package com.chatop.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+
+/**
+ * One page of the keyset-paginated rentals listing, newest first.
+ *
+ * @param rentals    rental items on this page
+ * @param nextCursor opaque token to request the following page (null on the last page)
+ */
+@Schema(description = "One page of rentals with a cursor to the next page.")
+public record RentalPageResponse(
+  @ArraySchema(
+    arraySchema = @Schema(description = "List of rental objects"),
+    schema = @Schema(implementation = RentalListItemResponse.class))
+  List<RentalListItemResponse> rentals,
+  @JsonProperty("next_cursor")
+  @Schema(description = "Cursor for the next page, null when there are no more rentals",
+    example = "MjAyNS0xMC0wNlQxMjozNDo1NnwxMg")
+  String nextCursor
+) {
+
+}
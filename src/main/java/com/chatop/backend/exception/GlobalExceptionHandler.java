@@ -3,6 +3,8 @@ package com.chatop.backend.exception;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -55,6 +57,17 @@ public class GlobalExceptionHandler {
     return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of());
   }
 
+  /**
+   * Handles writes rejected by a database constraint, such as a reference to a user or rental that
+   * does not exist (writes set foreign keys without loading the referenced rows).
+   */
+  @ExceptionHandler(DataIntegrityViolationException.class)
+  public ResponseEntity<Map<String, Object>> handleDataIntegrityViolation(
+    DataIntegrityViolationException ex) {
+    log.warn("Constraint violation: {}", ex.getMostSpecificCause().getMessage());
+    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of());
+  }
+
   /**
    * Handles internal server errors from service layer. Includes file system failures, database
    * issues, or unexpected runtime errors.
@@ -94,6 +107,19 @@ public class GlobalExceptionHandler {
     return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of());
   }
 
+  /**
+   * Handles requests rejected because a bounded resource is saturated, telling clients when to
+   * retry.
+   */
+  @ExceptionHandler(ServiceOverloadedException.class)
+  public ResponseEntity<Map<String, Object>> handleServiceOverloaded(
+    ServiceOverloadedException ex) {
+    log.warn("Service overloaded: {}", ex.getMessage());
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+      .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+      .body(Map.of());
+  }
+
   /**
    * Handles not found errors when requested resources are missing.
    */
@@ -0,0 +1,20 @@
+package com.chatop.backend.exception;
+
+/**
+ * Thrown when a request is rejected because a bounded resource (such as the password hashing
+ * executor) is saturated. The client may retry after the given delay.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+  private final long retryAfterSeconds;
+
+  public ServiceOverloadedException(String message, long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+}
@@ -42,10 +42,20 @@ public class Message {
   @JoinColumn(name = "user_id", nullable = false)
   private User user;
 
+  // Owner of the rental, copied from rentals.owner_id so that an owner's inbox is read in order
+  // from the (owner_id, created_at, id) index. Rentals never change owner.
+  @Column(name = "owner_id", nullable = false)
+  private Long ownerId;
+
   // Content of the message (required).
   @Column(name = "message", nullable = false, length = 2000)
   private String message;
 
+  // Random ID of a message inserted by the batched writer, which skips messages whose ID is already
+  // stored when it replays its journal (null for messages inserted directly).
+  @Column(name = "ingest_id", length = 36, unique = true, updatable = false)
+  private String ingestId;
+
   // Timestamp when the message was created.
   @Column(name = "created_at")
   private LocalDateTime createdAt;
@@ -0,0 +1,76 @@
+package com.chatop.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Entity representing a refresh token issued to a user. Maps to the 'refresh_tokens' table with a
+ * foreign key to 'users'.
+ * <p>
+ * Only the SHA-256 hash of the token is stored. Tokens are single-use: each refresh revokes the
+ * presented token and issues a new one in the same family (one family per login), so presenting
+ * an already used token reveals a stolen copy and revokes the whole family.
+ */
+@Entity
+@Table(name = "refresh_tokens")
+@Getter
+@Setter
+@NoArgsConstructor
+public class RefreshToken {
+
+  // Unique identifier for the token. Auto-generated.
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  // User the token was issued to (FK: refresh_tokens.user_id -> users.id).
+  @ManyToOne(fetch = FetchType.LAZY, optional = false)
+  @JoinColumn(name = "user_id", nullable = false)
+  private User user;
+
+  // Hex-encoded SHA-256 hash of the token value. Unique.
+  @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+  private String tokenHash;
+
+  // Identifier shared by all the tokens rotated from the same login.
+  @Column(name = "family_id", nullable = false, length = 36)
+  private String familyId;
+
+  // Time after which the token is no longer accepted.
+  @Column(name = "expires_at", nullable = false)
+  private LocalDateTime expiresAt;
+
+  // Time the token was used or revoked, null while it is still valid.
+  @Column(name = "revoked_at")
+  private LocalDateTime revokedAt;
+
+  // Why the token was used up or revoked, null while it is still valid.
+  @Enumerated(EnumType.STRING)
+  @Column(name = "revoked_reason", length = 16)
+  private RefreshTokenRevocation revokedReason;
+
+  // Timestamp when the token was created.
+  @Column(name = "created_at")
+  private LocalDateTime createdAt;
+
+  // Set creation timestamp before persisting a new token.
+  @PrePersist
+  public void onCreate() {
+    this.createdAt = LocalDateTime.now();
+  }
+
+}
@@ -0,0 +1,23 @@
+package com.chatop.backend.model;
+
+/**
+ * Why a refresh token stopped being accepted, stored with the token. Only a token that was used
+ * can reveal a stolen copy when presented again.
+ */
+public enum RefreshTokenRevocation {
+
+  /**
+   * Exchanged for its successor by a refresh
+   */
+  USED,
+
+  /**
+   * Revoked with its family when the user logged out
+   */
+  LOGGED_OUT,
+
+  /**
+   * Revoked with its family after a used token of the family was presented again
+   */
+  REUSE_DETECTED
+}
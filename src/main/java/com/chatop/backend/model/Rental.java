@@ -48,6 +48,11 @@ public class Rental {
   @Column(name = "picture", length = 255)
   private String picture;
 
+  // Comma-separated widths of the resized variants stored with the picture (null if none, e.g. for
+  // pictures uploaded before variants existed).
+  @Column(name = "picture_variants", length = 255)
+  private String pictureVariants;
+
   // Description of the rental.
   @Column(name = "description", length = 2000)
   private String description;
@@ -61,7 +66,8 @@ public class Rental {
   @Column(name = "created_at")
   private LocalDateTime createdAt;
 
-  // Timestamp when the rental was last updated.
+  // Timestamp when the rental was last updated. Stored to the microsecond, since it versions the
+  // rental's responses for conditional requests.
   @Column(name = "updated_at")
   private LocalDateTime updatedAt;
 
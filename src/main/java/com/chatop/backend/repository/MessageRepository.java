@@ -1,13 +1,117 @@
 package com.chatop.backend.repository;
 
 import com.chatop.backend.model.Message;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
- * Repository for Message persistence operations. Provides CRUD methods via Spring Data JPA.
+ * Repository for Message persistence operations. Provides CRUD methods via Spring Data JPA. Read
+ * queries select {@link MessageView} projections with keyset (seek) pagination over
+ * {@code (created_at, id)}, newest first, either for one rental (served by the
+ * {@code (rental_id, created_at, id)} index) or for every rental of an owner (served by the
+ * {@code (owner_id, created_at, id)} index on the owner copied onto each message), and the replay
+ * of messages missed by a message stream.
  */
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
+  /**
+   * Constructor expression shared by the projection queries (sender joined for its name only)
+   */
+  String SELECT_VIEW = "select new com.chatop.backend.repository.MessageView("
+    + "m.id, m.rental.id, u.id, u.name, m.message, m.createdAt) from Message m join m.user u ";
+
+  /**
+   * Seek condition and ordering shared by the "page after" queries
+   */
+  String AFTER_POSITION = "and (m.createdAt < :createdAt or (m.createdAt = :createdAt "
+    + "and m.id < :id)) ";
+  String NEWEST_FIRST = "order by m.createdAt desc, m.id desc";
+
+  /**
+   * Returns the first page of messages about a rental, newest first.
+   *
+   * @param rentalId the rental ID
+   * @param limit    maximum number of messages to return
+   * @return messages ordered by creation time then ID, descending
+   */
+  @Query(SELECT_VIEW + "where m.rental.id = :rentalId " + NEWEST_FIRST)
+  List<MessageView> findFirstPageByRental(@Param("rentalId") Long rentalId, Limit limit);
+
+  /**
+   * Returns the messages about a rental that come after the given position, newest first.
+   *
+   * @param rentalId  the rental ID
+   * @param createdAt creation time of the last message already returned
+   * @param id        ID of the last message already returned
+   * @param limit     maximum number of messages to return
+   * @return messages ordered by creation time then ID, descending
+   */
+  @Query(SELECT_VIEW + "where m.rental.id = :rentalId " + AFTER_POSITION + NEWEST_FIRST)
+  List<MessageView> findPageAfterByRental(
+    @Param("rentalId") Long rentalId,
+    @Param("createdAt") LocalDateTime createdAt,
+    @Param("id") Long id,
+    Limit limit);
+
+  /**
+   * Returns the first page of messages about any rental of an owner, newest first.
+   *
+   * @param ownerId the owner's user ID
+   * @param limit   maximum number of messages to return
+   * @return messages ordered by creation time then ID, descending
+   */
+  @Query(SELECT_VIEW + "where m.ownerId = :ownerId " + NEWEST_FIRST)
+  List<MessageView> findFirstInboxPage(@Param("ownerId") Long ownerId, Limit limit);
+
+  /**
+   * Returns the messages about any rental of an owner that come after the given position, newest
+   * first.
+   *
+   * @param ownerId   the owner's user ID
+   * @param createdAt creation time of the last message already returned
+   * @param id        ID of the last message already returned
+   * @param limit     maximum number of messages to return
+   * @return messages ordered by creation time then ID, descending
+   */
+  @Query(SELECT_VIEW + "where m.ownerId = :ownerId " + AFTER_POSITION + NEWEST_FIRST)
+  List<MessageView> findInboxPageAfter(
+    @Param("ownerId") Long ownerId,
+    @Param("createdAt") LocalDateTime createdAt,
+    @Param("id") Long id,
+    Limit limit);
+
+  /**
+   * Returns the creation time of a message about one of an owner's rentals, from which a
+   * reconnecting stream replays what it missed.
+   *
+   * @param ownerId the owner's user ID
+   * @param id      ID of the last message the client received
+   * @return the message's creation time, or empty if it is not in the owner's inbox
+   */
+  @Query("select m.createdAt from Message m where m.id = :id and m.ownerId = :ownerId")
+  Optional<LocalDateTime> findInboxCreatedAt(@Param("ownerId") Long ownerId, @Param("id") Long id);
+
+  /**
+   * Returns the messages about any rental of an owner created since a given time, oldest first,
+   * to replay what a reconnecting stream missed.
+   *
+   * @param ownerId the owner's user ID
+   * @param since   earliest creation time to return
+   * @param limit   maximum number of messages to return
+   * @return messages ordered by creation time then ID, ascending
+   */
+  @Query(SELECT_VIEW + "where m.ownerId = :ownerId and m.createdAt >= :since "
+    + "order by m.createdAt, m.id")
+  List<MessageView> findInboxSince(
+    @Param("ownerId") Long ownerId,
+    @Param("since") LocalDateTime since,
+    Limit limit);
+
 }
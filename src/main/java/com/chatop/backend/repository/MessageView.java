@@ -0,0 +1,27 @@
+package com.chatop.backend.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a message row, selected with a JPQL constructor expression. The rental is
+ * reduced to the {@code rental_id} column and the sender to its ID and name, so neither
+ * {@link com.chatop.backend.model.Rental} nor {@link com.chatop.backend.model.User} entities are
+ * loaded.
+ *
+ * @param id        message ID
+ * @param rentalId  rental the message is about
+ * @param userId    sender user ID
+ * @param userName  sender name
+ * @param message   message content
+ * @param createdAt creation timestamp
+ */
+public record MessageView(
+  Long id,
+  Long rentalId,
+  Long userId,
+  String userName,
+  String message,
+  LocalDateTime createdAt
+) {
+
+}
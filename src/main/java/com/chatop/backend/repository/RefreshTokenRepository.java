@@ -0,0 +1,66 @@
+package com.chatop.backend.repository;
+
+import com.chatop.backend.model.RefreshToken;
+import com.chatop.backend.model.RefreshTokenRevocation;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/** Repository interface for RefreshToken entity database operations. */
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+  /**
+   * Finds a refresh token by the hash of its value, together with its user.
+   *
+   * @param tokenHash hex-encoded SHA-256 hash of the token
+   * @return an Optional containing the token if found, empty otherwise
+   */
+  @Query("select t from RefreshToken t join fetch t.user where t.tokenHash = :tokenHash")
+  Optional<RefreshToken> findByTokenHash(@Param("tokenHash") String tokenHash);
+
+  /**
+   * Marks a token as used, provided no other request used it first. The conditional update makes
+   * concurrent refreshes with the same token race for a single winner.
+   *
+   * @param id        the token ID
+   * @param revokedAt time of use
+   * @return 1 if the token was still valid and is now used, 0 otherwise
+   */
+  @Transactional
+  @Modifying
+  @Query("update RefreshToken t set t.revokedAt = :revokedAt, "
+    + "t.revokedReason = com.chatop.backend.model.RefreshTokenRevocation.USED "
+    + "where t.id = :id and t.revokedAt is null")
+  int markUsed(@Param("id") Long id, @Param("revokedAt") LocalDateTime revokedAt);
+
+  /**
+   * Revokes every still valid token of a family (for logout or after a reuse was detected).
+   *
+   * @param familyId  the token family
+   * @param revokedAt time of revocation
+   * @param reason    why the family is revoked
+   * @return the number of revoked tokens
+   */
+  @Transactional
+  @Modifying
+  @Query("update RefreshToken t set t.revokedAt = :revokedAt, t.revokedReason = :reason "
+    + "where t.familyId = :familyId and t.revokedAt is null")
+  int revokeFamily(@Param("familyId") String familyId, @Param("revokedAt") LocalDateTime revokedAt,
+    @Param("reason") RefreshTokenRevocation reason);
+
+  /**
+   * Deletes tokens that expired before a given time. Used tokens are kept until then so that their
+   * reuse can still be detected.
+   *
+   * @param before expiration cutoff
+   * @return the number of deleted tokens
+   */
+  @Transactional
+  @Modifying
+  @Query("delete from RefreshToken t where t.expiresAt < :before")
+  int deleteExpired(@Param("before") LocalDateTime before);
+}
@@ -1,13 +1,160 @@
 package com.chatop.backend.repository;
 
 import com.chatop.backend.model.Rental;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
- * Repository for Rental persistence operations. Provides CRUD methods via Spring Data JPA.
+ * Repository for Rental persistence operations. Provides CRUD methods via Spring Data JPA. Read
+ * queries select {@link RentalView} projections directly instead of hydrating entities, and
+ * include keyset (seek) pagination over {@code (created_at, id)}, newest first, and a streaming
+ * read of the whole table.
  */
 @Repository
 public interface RentalRepository extends JpaRepository<Rental, Long> {
 
+  /**
+   * Constructor expression shared by the projection queries (owner reduced to its FK column)
+   */
+  String SELECT_VIEW = "select new com.chatop.backend.repository.RentalView("
+    + "r.id, r.name, r.surface, r.price, r.picture, r.pictureVariants, r.description, "
+    + "r.owner.id, r.createdAt, r.updatedAt) from Rental r ";
+
+  /**
+   * Finds a single rental projection by ID.
+   *
+   * @param id the rental ID
+   * @return an Optional containing the rental projection if found, empty otherwise
+   */
+  @Query(SELECT_VIEW + "where r.id = :id")
+  Optional<RentalView> findViewById(@Param("id") Long id);
+
+  /**
+   * Returns the version of the whole rentals collection: row count and latest modification time.
+   *
+   * @return the collection's version
+   */
+  @Query("select new com.chatop.backend.repository.RentalVersion(count(r), max(r.updatedAt)) "
+    + "from Rental r")
+  RentalVersion findCollectionVersion();
+
+  /**
+   * Returns projections of all rentals.
+   *
+   * @return every rental as a projection
+   */
+  @Query(SELECT_VIEW)
+  List<RentalView> findAllViews();
+
+  /**
+   * Returns the first page of rentals, newest first.
+   *
+   * @param limit maximum number of rentals to return
+   * @return rentals ordered by creation time then ID, descending
+   */
+  @Query(SELECT_VIEW + "order by r.createdAt desc, r.id desc")
+  List<RentalView> findFirstPage(Limit limit);
+
+  /**
+   * Returns the rentals that come after the given position, newest first. Seeks directly to the
+   * position using the {@code (created_at, id)} index rather than skipping over an offset.
+   *
+   * @param createdAt creation time of the last rental already returned
+   * @param id        ID of the last rental already returned
+   * @param limit     maximum number of rentals to return
+   * @return rentals ordered by creation time then ID, descending
+   */
+  @Query(SELECT_VIEW
+    + "where r.createdAt < :createdAt or (r.createdAt = :createdAt and r.id < :id) "
+    + "order by r.createdAt desc, r.id desc")
+  List<RentalView> findPageAfter(
+    @Param("createdAt") LocalDateTime createdAt,
+    @Param("id") Long id,
+    Limit limit);
+
+  /**
+   * Returns the projections of the given rentals, in no particular order.
+   *
+   * @param ids the rental IDs
+   * @return the rentals that exist among the given IDs
+   */
+  @Query(SELECT_VIEW + "where r.id in :ids")
+  List<RentalView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Returns the rentals created or modified at or after the given time, for incremental refreshes
+   * of the search index.
+   *
+   * @param since the earliest modification time to include
+   * @return rentals modified since then
+   */
+  @Query(SELECT_VIEW + "where r.updatedAt >= :since")
+  List<RentalView> findUpdatedSince(@Param("since") LocalDateTime since);
+
+  /**
+   * Streams every rental projection through a forward-only, read-only cursor. A fetch size of
+   * {@link Integer#MIN_VALUE} makes MySQL Connector/J send rows one at a time instead of buffering
+   * the whole result set. Must be consumed (and closed) inside a read-only transaction.
+   *
+   * @return a stream over all rentals
+   */
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+    @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+  })
+  @Query(SELECT_VIEW)
+  Stream<RentalView> streamAll();
+
+  /**
+   * Sets a rental's picture URL and variant widths without loading the rental. Also bumps
+   * {@code updated_at} so caches and HTTP validators see the change.
+   *
+   * @param id              the rental ID
+   * @param picture         the new picture URL
+   * @param pictureVariants comma-separated widths of the picture's stored variants (may be null)
+   * @param updatedAt       the modification time to record
+   * @return the number of updated rows (0 if the rental no longer exists)
+   */
+  @Transactional
+  @Modifying
+  @Query("update Rental r set r.picture = :picture, r.pictureVariants = :pictureVariants, "
+    + "r.updatedAt = :updatedAt where r.id = :id")
+  int updatePicture(
+    @Param("id") Long id,
+    @Param("picture") String picture,
+    @Param("pictureVariants") String pictureVariants,
+    @Param("updatedAt") LocalDateTime updatedAt);
+
+  /**
+   * Returns every picture URL referenced by at least one rental, for the orphaned image sweeper.
+   *
+   * @return the distinct referenced picture URLs
+   */
+  @Query("select distinct r.picture from Rental r where r.picture is not null")
+  Set<String> findReferencedPictures();
+
+  /**
+   * Counts the rentals referencing a picture. With content-addressed storage, several rentals may
+   * share one image file, which may only be deleted once this count drops to zero.
+   *
+   * @param picture the picture URL
+   * @return the number of rentals using the picture
+   */
+  long countByPicture(String picture);
+
 }
@@ -0,0 +1,44 @@
+package com.chatop.backend.repository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Lightweight version information for one rental or the whole rentals collection, computed by an
+ * aggregate query without loading any rental, or taken from an already loaded rental. Used to
+ * answer conditional GET requests.
+ *
+ * @param count        number of matching rentals (0 when a single rental does not exist)
+ * @param lastModified most recent {@code updated_at} among matching rentals (null if none)
+ */
+public record RentalVersion(Long count, LocalDateTime lastModified) {
+
+  /**
+   * Returns the last modification time in epoch milliseconds, as expected by HTTP validators.
+   *
+   * @return the last modification time, or -1 if unknown
+   */
+  public long lastModifiedMillis() {
+    return lastModified != null
+      ? lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+      : -1;
+  }
+
+  /**
+   * Builds a strong entity tag from a scope (rental ID or collection name), the row count, and the
+   * last modification time to the microsecond, so that writes landing in the same second (such as
+   * a rental's creation and its picture being attached) still produce different tags.
+   *
+   * @param scope identifies the resource the tag applies to
+   * @return the quoted entity tag
+   */
+  public String etag(String scope) {
+    long micros = lastModified != null
+      ? ChronoUnit.MICROS.between(Instant.EPOCH,
+        lastModified.atZone(ZoneId.systemDefault()).toInstant())
+      : -1;
+    return "\"" + scope + "-" + count + "-" + Long.toHexString(micros) + "\"";
+  }
+}
@@ -0,0 +1,35 @@
+package com.chatop.backend.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a rental row, selected with a JPQL constructor expression. Unlike a
+ * managed {@link com.chatop.backend.model.Rental}, it carries no dirty-checking snapshot and no lazy
+ * owner proxy: the owner is reduced to the {@code owner_id} column.
+ *
+ * @param id              rental ID
+ * @param name            rental name
+ * @param surface         surface area
+ * @param price           price
+ * @param picture         picture URL
+ * @param pictureVariants comma-separated widths of the picture's stored variants (null if none)
+ * @param description     description text
+ * @param ownerId         owner user ID
+ * @param createdAt       creation timestamp
+ * @param updatedAt       last update timestamp
+ */
+public record RentalView(
+  Long id,
+  String name,
+  BigDecimal surface,
+  BigDecimal price,
+  String picture,
+  String pictureVariants,
+  String description,
+  Long ownerId,
+  LocalDateTime createdAt,
+  LocalDateTime updatedAt
+) {
+
+}
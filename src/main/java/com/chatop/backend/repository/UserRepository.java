@@ -3,6 +3,10 @@ package com.chatop.backend.repository;
 import com.chatop.backend.model.User;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 /** Repository interface for User entity database operations. */
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -22,4 +26,22 @@ public interface UserRepository extends JpaRepository<User, Long> {
    * @return true if a user with this email exists, false otherwise
    */
   boolean existsByEmail(String email);
+
+  /**
+   * Replaces a user's password hash, provided it is still the expected one, so that a re-hash
+   * never overwrites a concurrent password change.
+   *
+   * @param id              the user ID
+   * @param currentPassword the hash the new one replaces
+   * @param newPassword     the new hash
+   * @return the number of updated rows (0 if the hash changed meanwhile)
+   */
+  @Transactional
+  @Modifying
+  @Query("update User u set u.password = :newPassword "
+    + "where u.id = :id and u.password = :currentPassword")
+  int updatePassword(
+    @Param("id") Long id,
+    @Param("currentPassword") String currentPassword,
+    @Param("newPassword") String newPassword);
 }
@@ -0,0 +1,492 @@
+package com.chatop.backend.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over documents made of weighted text fields, ranked with BM25.
+ * <ul>
+ *   <li>Documents are identified by a {@code long} key (such as a database ID) and numbered
+ *   internally. A term's posting list holds the numbers of the documents containing it and the
+ *   term's weighted frequency in each, as two parallel primitive arrays sorted by document
+ *   number, so queries merge arrays without boxing.</li>
+ *   <li>Field weights scale term frequencies and document lengths, so an occurrence in a heavier
+ *   field (such as a title) counts as several occurrences in the body.</li>
+ *   <li>Every query word must match. Terms are also kept sorted, so the last word, which may
+ *   still be being typed, matches the terms it is a prefix of too, with a lower score than the
+ *   exact term.</li>
+ *   <li>Searches run concurrently under a read lock; updates take the write lock, after the text
+ *   has been analyzed.</li>
+ * </ul>
+ */
+public class InvertedIndex {
+
+  /**
+   * BM25 term frequency saturation and document length normalization parameters
+   */
+  private static final float K1 = 1.2f;
+  private static final float B = 0.75f;
+
+  /**
+   * Score factor of terms only matched as a prefix of the query word
+   */
+  private static final float PREFIX_WEIGHT = 0.5f;
+
+  /**
+   * Maximum number of terms the last query word expands to, and the length it needs to expand at
+   * all (a single letter would match a large part of the dictionary)
+   */
+  private static final int MAX_EXPANSIONS = 50;
+  private static final int MIN_PREFIX_LENGTH = 2;
+
+  /**
+   * Query words beyond this count are ignored
+   */
+  private static final int MAX_QUERY_WORDS = 8;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private static final long[] NO_KEYS = new long[0];
+
+  private final float[] fieldWeights;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<String, Postings> postingsByTerm = new HashMap<>();
+
+  // Same terms, sorted for prefix lookups; only changes when a term appears or disappears
+  private final NavigableSet<String> sortedTerms = new TreeSet<>();
+
+  private final Map<Long, Integer> documentsByKey = new HashMap<>();
+
+  // Indexed by document number: key, weighted length, and distinct terms (to remove its postings)
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private float[] lengths = new float[INITIAL_CAPACITY];
+  private String[][] documentTerms = new String[INITIAL_CAPACITY][];
+
+  private int documentCount;
+
+  private double totalLength;
+
+  /**
+   * Creates an empty index for documents with the given fields.
+   *
+   * @param fieldWeights weight of each field, in the order fields are passed to
+   *                     {@link #put(long, String...)}
+   */
+  public InvertedIndex(float... fieldWeights) {
+    if (fieldWeights.length == 0) {
+      throw new IllegalArgumentException("At least one field is required");
+    }
+    this.fieldWeights = fieldWeights.clone();
+  }
+
+  /**
+   * Adds a document, or replaces the document with the same key.
+   *
+   * @param key    the document key
+   * @param fields the text of each field (null for an empty field)
+   */
+  public void put(long key, String... fields) {
+    if (fields.length != fieldWeights.length) {
+      throw new IllegalArgumentException(
+        "Expected " + fieldWeights.length + " fields, got " + fields.length);
+    }
+
+    Map<String, Float> frequencies = new HashMap<>();
+    float length = 0;
+    for (int field = 0; field < fields.length; field++) {
+      for (String term : TextAnalyzer.terms(fields[field])) {
+        frequencies.merge(term, fieldWeights[field], Float::sum);
+        length += fieldWeights[field];
+      }
+    }
+
+    lock.writeLock().lock();
+    try {
+      Integer existing = documentsByKey.get(key);
+      int document;
+      if (existing != null) {
+        // Keeps its number, so posting lists stay sorted
+        document = existing;
+        removePostings(document);
+        totalLength -= lengths[document];
+      } else {
+        document = documentCount++;
+        ensureCapacity(documentCount);
+        keys[document] = key;
+        documentsByKey.put(key, document);
+      }
+
+      String[] terms = new String[frequencies.size()];
+      int i = 0;
+      for (Map.Entry<String, Float> entry : frequencies.entrySet()) {
+        Postings postings = postingsByTerm.get(entry.getKey());
+        if (postings == null) {
+          postings = new Postings(entry.getKey());
+          postingsByTerm.put(postings.term, postings);
+          sortedTerms.add(postings.term);
+        }
+        postings.add(document, entry.getValue());
+        // Shares the dictionary's copy of the term
+        terms[i++] = postings.term;
+      }
+      documentTerms[document] = terms;
+      lengths[document] = length;
+      totalLength += length;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the keys of the best matching documents, best first. Documents must contain every
+   * word of the query, except that the last word may also be the prefix of a term; equal scores
+   * rank higher keys first.
+   *
+   * @param query the search query
+   * @param limit maximum number of keys to return
+   * @return the matching keys, best first (empty if nothing matches)
+   */
+  public long[] search(String query, int limit) {
+    List<String> words = TextAnalyzer.queryTerms(query);
+    if (words.isEmpty() || limit <= 0) {
+      return NO_KEYS;
+    }
+    if (words.size() > MAX_QUERY_WORDS) {
+      words = words.subList(0, MAX_QUERY_WORDS);
+    }
+
+    lock.readLock().lock();
+    try {
+      if (documentCount == 0) {
+        return NO_KEYS;
+      }
+      float averageLength = (float) (totalLength / documentCount);
+
+      ScoredDocuments matches = null;
+      for (int i = 0; i < words.size(); i++) {
+        String word = words.get(i);
+        ScoredDocuments wordMatches = i < words.size() - 1 || word.length() < MIN_PREFIX_LENGTH
+          ? matchExact(word, averageLength, matches)
+          : matchPrefix(word, averageLength, matches);
+        matches = matches == null ? wordMatches : matches.intersect(wordMatches);
+        if (matches.size == 0) {
+          return NO_KEYS;
+        }
+      }
+      return top(matches, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of indexed documents.
+   *
+   * @return the document count
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return documentCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of distinct indexed terms.
+   *
+   * @return the term count
+   */
+  public int termCount() {
+    lock.readLock().lock();
+    try {
+      return postingsByTerm.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private ScoredDocuments matchExact(String word, float averageLength,
+    ScoredDocuments candidates) {
+    Postings postings = postingsByTerm.get(word);
+    return postings != null
+      ? score(postings, 1, averageLength, candidates)
+      : ScoredDocuments.EMPTY;
+  }
+
+  /**
+   * Scores the documents containing a query word or a term it is a prefix of, keeping the best
+   * score when a document contains several of them. The lists are merged pairwise, like a merge
+   * sort, so each document is copied once per level rather than once per term.
+   */
+  private ScoredDocuments matchPrefix(String word, float averageLength,
+    ScoredDocuments candidates) {
+    List<ScoredDocuments> lists = new ArrayList<>();
+    for (String term : sortedTerms.tailSet(word, true)) {
+      if (!term.startsWith(word) || lists.size() == MAX_EXPANSIONS) {
+        break;
+      }
+      float weight = term.length() == word.length() ? 1 : PREFIX_WEIGHT;
+      lists.add(score(postingsByTerm.get(term), weight, averageLength, candidates));
+    }
+    if (lists.isEmpty()) {
+      return ScoredDocuments.EMPTY;
+    }
+
+    while (lists.size() > 1) {
+      List<ScoredDocuments> merged = new ArrayList<>((lists.size() + 1) / 2);
+      for (int i = 0; i < lists.size(); i += 2) {
+        merged.add(i + 1 < lists.size() ? lists.get(i).union(lists.get(i + 1)) : lists.get(i));
+      }
+      lists = merged;
+    }
+    return lists.get(0);
+  }
+
+  /**
+   * Computes the BM25 score of a term in each document of its posting list, or only in the
+   * candidates matching the previous query words when there are some, so that a common term is
+   * not scored (nor merged) across documents the query has already excluded.
+   */
+  private ScoredDocuments score(Postings postings, float weight, float averageLength,
+    ScoredDocuments candidates) {
+    int frequency = postings.size;
+    float idf = (float) Math.log(1 + (documentCount - frequency + 0.5) / (frequency + 0.5));
+    ScoredDocuments scored =
+      new ScoredDocuments(candidates == null ? frequency : Math.min(frequency, candidates.size));
+    int n = 0;
+    int candidate = 0;
+    for (int i = 0; i < frequency; i++) {
+      int document = postings.documents[i];
+      if (candidates != null) {
+        // Both lists are sorted by document number
+        while (candidate < candidates.size && candidates.documents[candidate] < document) {
+          candidate++;
+        }
+        if (candidate == candidates.size) {
+          break;
+        }
+        if (candidates.documents[candidate] != document) {
+          continue;
+        }
+      }
+      float termFrequency = postings.frequencies[i];
+      float norm = K1 * (1 - B + B * lengths[document] / averageLength);
+      scored.documents[n] = document;
+      scored.scores[n++] = weight * idf * termFrequency * (K1 + 1) / (termFrequency + norm);
+    }
+    scored.size = n;
+    return scored;
+  }
+
+  /**
+   * Selects the best matches with a bounded min-heap whose root is the worst match kept so far.
+   */
+  private long[] top(ScoredDocuments matches, int limit) {
+    int count = Math.min(limit, matches.size);
+    int[] heap = new int[count];
+    int heapSize = 0;
+    for (int i = 0; i < matches.size; i++) {
+      if (heapSize < count) {
+        heap[heapSize] = i;
+        siftUp(heap, heapSize++, matches);
+      } else if (ranksBefore(i, heap[0], matches)) {
+        heap[0] = i;
+        siftDown(heap, count, matches);
+      }
+    }
+
+    // Removing the worst match first fills the result from the end
+    long[] result = new long[count];
+    for (int size = count; size > 0; size--) {
+      result[size - 1] = keys[matches.documents[heap[0]]];
+      heap[0] = heap[size - 1];
+      siftDown(heap, size - 1, matches);
+    }
+    return result;
+  }
+
+  private void siftUp(int[] heap, int position, ScoredDocuments matches) {
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (!ranksBefore(heap[parent], heap[position], matches)) {
+        return;
+      }
+      swap(heap, parent, position);
+      position = parent;
+    }
+  }
+
+  private void siftDown(int[] heap, int size, ScoredDocuments matches) {
+    int position = 0;
+    while (true) {
+      int worst = position;
+      for (int child = 2 * position + 1; child <= 2 * position + 2 && child < size; child++) {
+        if (ranksBefore(heap[worst], heap[child], matches)) {
+          worst = child;
+        }
+      }
+      if (worst == position) {
+        return;
+      }
+      swap(heap, position, worst);
+      position = worst;
+    }
+  }
+
+  private boolean ranksBefore(int a, int b, ScoredDocuments matches) {
+    float scoreA = matches.scores[a];
+    float scoreB = matches.scores[b];
+    if (scoreA != scoreB) {
+      return scoreA > scoreB;
+    }
+    return keys[matches.documents[a]] > keys[matches.documents[b]];
+  }
+
+  private static void swap(int[] heap, int i, int j) {
+    int value = heap[i];
+    heap[i] = heap[j];
+    heap[j] = value;
+  }
+
+  private void removePostings(int document) {
+    for (String term : documentTerms[document]) {
+      Postings postings = postingsByTerm.get(term);
+      postings.remove(document);
+      if (postings.size == 0) {
+        postingsByTerm.remove(term);
+        sortedTerms.remove(term);
+      }
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > keys.length) {
+      int newLength = Math.max(capacity, keys.length * 2);
+      keys = Arrays.copyOf(keys, newLength);
+      lengths = Arrays.copyOf(lengths, newLength);
+      documentTerms = Arrays.copyOf(documentTerms, newLength);
+    }
+  }
+
+  /**
+   * Documents containing a term, with the term's weighted frequency in each, sorted by document
+   * number. New documents have the highest number, so indexing them appends.
+   */
+  private static final class Postings {
+
+    private final String term;
+    private int[] documents = new int[2];
+    private float[] frequencies = new float[2];
+    private int size;
+
+    private Postings(String term) {
+      this.term = term;
+    }
+
+    private void add(int document, float frequency) {
+      int position = size == 0 || documents[size - 1] < document
+        ? -(size + 1)
+        : Arrays.binarySearch(documents, 0, size, document);
+      if (position >= 0) {
+        frequencies[position] = frequency;
+        return;
+      }
+      position = -position - 1;
+      if (size == documents.length) {
+        documents = Arrays.copyOf(documents, size * 2);
+        frequencies = Arrays.copyOf(frequencies, size * 2);
+      }
+      System.arraycopy(documents, position, documents, position + 1, size - position);
+      System.arraycopy(frequencies, position, frequencies, position + 1, size - position);
+      documents[position] = document;
+      frequencies[position] = frequency;
+      size++;
+    }
+
+    private void remove(int document) {
+      int position = Arrays.binarySearch(documents, 0, size, document);
+      if (position < 0) {
+        return;
+      }
+      System.arraycopy(documents, position + 1, documents, position, size - position - 1);
+      System.arraycopy(frequencies, position + 1, frequencies, position, size - position - 1);
+      size--;
+    }
+  }
+
+  /**
+   * Query-time list of document numbers with their scores, sorted by document number.
+   */
+  private static final class ScoredDocuments {
+
+    private static final ScoredDocuments EMPTY = new ScoredDocuments(0);
+
+    private final int[] documents;
+    private final float[] scores;
+    private int size;
+
+    private ScoredDocuments(int capacity) {
+      this.documents = new int[capacity];
+      this.scores = new float[capacity];
+    }
+
+    /**
+     * Documents in either list, with the better of their two scores.
+     */
+    private ScoredDocuments union(ScoredDocuments other) {
+      if (size == 0) {
+        return other;
+      }
+      ScoredDocuments result = new ScoredDocuments(size + other.size);
+      int i = 0;
+      int j = 0;
+      int n = 0;
+      while (i < size || j < other.size) {
+        if (j == other.size || (i < size && documents[i] < other.documents[j])) {
+          result.documents[n] = documents[i];
+          result.scores[n++] = scores[i++];
+        } else if (i == size || other.documents[j] < documents[i]) {
+          result.documents[n] = other.documents[j];
+          result.scores[n++] = other.scores[j++];
+        } else {
+          result.documents[n] = documents[i];
+          result.scores[n++] = Math.max(scores[i++], other.scores[j++]);
+        }
+      }
+      result.size = n;
+      return result;
+    }
+
+    /**
+     * Documents in both lists, with the sum of their two scores.
+     */
+    private ScoredDocuments intersect(ScoredDocuments other) {
+      ScoredDocuments result = new ScoredDocuments(Math.min(size, other.size));
+      int i = 0;
+      int j = 0;
+      int n = 0;
+      while (i < size && j < other.size) {
+        if (documents[i] < other.documents[j]) {
+          i++;
+        } else if (other.documents[j] < documents[i]) {
+          j++;
+        } else {
+          result.documents[n] = documents[i];
+          result.scores[n++] = scores[i++] + other.scores[j++];
+        }
+      }
+      result.size = n;
+      return result;
+    }
+  }
+}
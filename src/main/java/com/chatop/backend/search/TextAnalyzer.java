@@ -0,0 +1,106 @@
+package com.chatop.backend.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits French (and English) listing text into search terms. Terms are lowercased and folded to
+ * ASCII: accents are stripped after canonical decomposition ({@code é} becomes {@code e}) and
+ * ligatures are expanded ({@code œ} becomes {@code oe}), so {@code "Château"} and
+ * {@code "chateau"} match. Common stop words and single letters (such as the elided {@code l'} and
+ * {@code d'}) are dropped, and a trailing plural {@code s} or {@code x} is removed from longer
+ * terms so that singular and plural forms share a term.
+ */
+public final class TextAnalyzer {
+
+  /**
+   * Frequent words carrying no meaning on their own, already folded
+   */
+  private static final Set<String> STOP_WORDS = Set.of(
+    "au", "aux", "avec", "ce", "ces", "dans", "de", "des", "du", "en", "et", "la", "le", "les",
+    "ou", "par", "pour", "sur", "un", "une",
+    "and", "in", "of", "the", "with");
+
+  /**
+   * Terms shorter than this keep their trailing {@code s} or {@code x} (such as "bus")
+   */
+  private static final int MIN_PLURAL_LENGTH = 4;
+
+  private TextAnalyzer() {
+  }
+
+  /**
+   * Returns the terms of a text, in order, with duplicates.
+   *
+   * @param text the text to analyze (may be null)
+   * @return the text's terms
+   */
+  public static List<String> terms(String text) {
+    return analyze(text, false);
+  }
+
+  /**
+   * Returns the terms of a search query. Unlike {@link #terms(String)}, the last word is kept even
+   * if it is a stop word, since it may be the beginning of a longer word still being typed.
+   *
+   * @param query the search query (may be null)
+   * @return the query's terms
+   */
+  public static List<String> queryTerms(String query) {
+    return analyze(query, true);
+  }
+
+  private static List<String> analyze(String text, boolean keepLastWord) {
+    List<String> terms = new ArrayList<>();
+    if (text == null || text.isEmpty()) {
+      return terms;
+    }
+
+    String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+    StringBuilder word = new StringBuilder();
+    for (int i = 0; i < decomposed.length(); i++) {
+      char c = decomposed.charAt(i);
+      if (Character.getType(c) == Character.NON_SPACING_MARK) {
+        // Accent detached from its letter by the decomposition
+        continue;
+      }
+      c = Character.toLowerCase(c);
+      if (c == 'œ') {
+        word.append("oe");
+      } else if (c == 'æ') {
+        word.append("ae");
+      } else if (c == 'ß') {
+        word.append("ss");
+      } else if (Character.isLetterOrDigit(c)) {
+        word.append(c);
+      } else {
+        addTerm(terms, word, false);
+      }
+    }
+    addTerm(terms, word, keepLastWord);
+    return terms;
+  }
+
+  private static void addTerm(List<String> terms, StringBuilder word, boolean keep) {
+    if (word.isEmpty()) {
+      return;
+    }
+    String term = word.toString();
+    word.setLength(0);
+
+    if (!keep && (isSingleLetter(term) || STOP_WORDS.contains(term))) {
+      return;
+    }
+    char last = term.charAt(term.length() - 1);
+    if (term.length() >= MIN_PLURAL_LENGTH && (last == 's' || last == 'x')) {
+      term = term.substring(0, term.length() - 1);
+    }
+    terms.add(term);
+  }
+
+  private static boolean isSingleLetter(String term) {
+    return term.length() == 1 && Character.isLetter(term.charAt(0));
+  }
+}
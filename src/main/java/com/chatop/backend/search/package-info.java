@@ -0,0 +1,11 @@
+/**
+ * In-memory full-text search utilities used by the service layer.
+ * <p>
+ * Text is split into accent-folded terms by {@link com.chatop.backend.search.TextAnalyzer} and
+ * indexed by {@link com.chatop.backend.search.InvertedIndex}, which ranks matches with BM25. Both
+ * are plain classes without Spring dependencies; keeping an index in sync with the database is up
+ * to the service that owns it.
+ * <p>
+ * Example: {@link com.chatop.backend.service.RentalSearchIndex}.
+ */
+package com.chatop.backend.search;
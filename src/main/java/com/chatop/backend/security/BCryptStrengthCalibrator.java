@@ -0,0 +1,66 @@
+package com.chatop.backend.security;
+
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks the BCrypt work factor (log2 of the number of rounds) whose hash time on this machine is
+ * closest to, without exceeding, a target duration.
+ * <p>
+ * Each additional unit of strength doubles the hash time, so only the minimum strength is timed
+ * and the others are extrapolated. The result never goes below the minimum, so a slow machine
+ * keeps the library default rather than weakening stored hashes.
+ */
+@Slf4j
+public final class BCryptStrengthCalibrator {
+
+  /**
+   * Strength timed to extrapolate the others (BCrypt's default)
+   */
+  public static final int MIN_STRENGTH = 10;
+
+  /**
+   * Highest strength the calibration may pick (about 64 times slower than the minimum)
+   */
+  public static final int MAX_STRENGTH = 16;
+
+  /**
+   * Number of timed hashes; the fastest one is kept to discount warm-up and scheduling noise
+   */
+  private static final int SAMPLES = 3;
+
+  private BCryptStrengthCalibrator() {
+  }
+
+  /**
+   * Measures BCrypt on this machine and returns the strength to use.
+   *
+   * @param target maximum time a hash should take
+   * @return the highest strength whose estimated hash time fits the target, between
+   * {@link #MIN_STRENGTH} and {@link #MAX_STRENGTH}
+   */
+  public static int calibrate(Duration target) {
+    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(MIN_STRENGTH);
+    // Warm up the JIT before timing
+    encoder.encode("calibration");
+
+    long fastestNanos = Long.MAX_VALUE;
+    for (int i = 0; i < SAMPLES; i++) {
+      long start = System.nanoTime();
+      encoder.encode("calibration");
+      fastestNanos = Math.min(fastestNanos, System.nanoTime() - start);
+    }
+
+    int strength = MIN_STRENGTH;
+    long estimatedNanos = fastestNanos;
+    while (strength < MAX_STRENGTH && estimatedNanos * 2 <= target.toNanos()) {
+      strength++;
+      estimatedNanos *= 2;
+    }
+
+    log.info("BCrypt strength {} selected (estimated {} ms per hash, target {} ms)", strength,
+      estimatedNanos / 1_000_000, target.toMillis());
+    return strength;
+  }
+}
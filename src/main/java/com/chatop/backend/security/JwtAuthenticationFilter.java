@@ -1,6 +1,8 @@
 package com.chatop.backend.security;
 
+import com.chatop.backend.model.User;
 import com.chatop.backend.service.AuthService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,16 +12,22 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-/** Filter that validates JWT tokens from incoming requests and sets authentication context. */
+/**
+ * Filter that validates JWT tokens from incoming requests and sets authentication context. Access
+ * tokens carry the user's ID and name, so the principal is built from the verified claims without
+ * a database lookup. Tokens issued before these claims existed are resolved from the database, and
+ * the users found are kept in a {@link PrincipalCache} so repeated requests with the same token do
+ * not hit the database.
+ */
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
   private final JwtService jwtService;
   private final AuthService authService;
+  private final PrincipalCache principalCache;
 
   /**
    * Intercepts incoming requests, extracts and validates JWT tokens, and sets the authentication
@@ -47,15 +55,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     }
 
     final String jwt = authHeader.substring(7);
-    final String userEmail = jwtService.extractUsername(jwt);
+    // Verify the token once and reuse its claims for every check below
+    final Claims claims = jwtService.extractAllClaims(jwt);
+    final String userEmail = claims.getSubject();
 
     // Check if user is not already authenticated
-    if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-      UserDetails userDetails = authService.findByEmail(userEmail).orElse(null);
-      if (userDetails != null && jwtService.isTokenValid(jwt, userEmail)) {
+    if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null
+      && jwtService.isTokenValid(claims, userEmail)) {
+      User user = resolveUser(claims, userEmail);
+      if (user != null) {
         // Set authentication in the security context
         UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-          userDetails, null, userDetails.getAuthorities());
+          user, null, user.getAuthorities());
         authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
         SecurityContextHolder.getContext().setAuthentication(authToken);
       }
@@ -65,4 +76,44 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  /**
+   * Resolves the user for a validated token: from its claims when it carries them, otherwise from
+   * the principal cache when possible and from the database. Database results are cached until the
+   * token expires or the cache TTL elapses. Either way, each request gets its own principal
+   * instance.
+   *
+   * @param claims    the verified token claims
+   * @param userEmail the token subject
+   * @return the matching user, or null if no such user exists
+   */
+  private User resolveUser(Claims claims, String userEmail) {
+    User user = principalFromClaims(claims, userEmail);
+    if (user != null) {
+      return user;
+    }
+
+    return principalCache.getOrLoad(userEmail, claims.getIssuedAt(), claims.getExpiration(),
+      email -> authService.findByEmail(email).orElse(null));
+  }
+
+  /**
+   * Builds the principal from the identity claims of an access token. Only the ID, email, and name
+   * are set; endpoints needing other fields load the user themselves.
+   *
+   * @return the principal, or null if the token does not carry the identity claims
+   */
+  private static User principalFromClaims(Claims claims, String userEmail) {
+    Object userId = claims.get(JwtService.CLAIM_USER_ID);
+    String name = claims.get(JwtService.CLAIM_NAME, String.class);
+    if (!(userId instanceof Number number) || name == null) {
+      return null;
+    }
+
+    User user = new User();
+    user.setId(number.longValue());
+    user.setEmail(userEmail);
+    user.setName(name);
+    return user;
+  }
+
 }
@@ -1,21 +1,40 @@
 package com.chatop.backend.security;
 
+import com.chatop.backend.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import java.security.Key;
 import java.util.Base64;
 import java.util.Date;
 import java.util.Map;
 import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-/** Service for generating and validating JWT tokens. */
+/**
+ * Service for generating and validating JWT tokens. The signing key and the (immutable,
+ * thread-safe) parser are built once at startup, and {@link #extractAllClaims(String)} verifies a
+ * token's signature a single time for all the claims a request needs. Verified tokens can be
+ * remembered by a {@link VerifiedTokenCache} so repeat requests skip verification altogether.
+ */
 @Service
+@RequiredArgsConstructor
 public class JwtService {
 
+  /**
+   * Claims carrying the user's ID and name, so the principal can be built without a lookup
+   */
+  public static final String CLAIM_USER_ID = "uid";
+  public static final String CLAIM_NAME = "name";
+
+  private final VerifiedTokenCache verifiedTokenCache;
+
   // Secret key for signing JWTs, injected from application properties.
   @Value("${jwt.secret}")
   private String secretKey;
@@ -24,21 +43,29 @@ public class JwtService {
   @Value("${jwt.expiration}")
   private long jwtExpiration;
 
+  // HMAC signing key decoded once from the base64 secret.
+  private Key signingKey;
+
+  // Reusable parser bound to the signing key.
+  private JwtParser jwtParser;
+
   /**
-   * Retrieves the signing key from the base64-encoded secret.
-   *
-   * @return the HMAC signing key
+   * Decodes the base64-encoded secret into the HMAC signing key and builds the shared parser.
    */
-  private Key getSigningKey() {
+  @PostConstruct
+  void initializeSigningKey() {
     byte[] keyBytes = Base64.getDecoder().decode(secretKey);
-    return Keys.hmacShaKeyFor(keyBytes);
+    signingKey = Keys.hmacShaKeyFor(keyBytes);
+    jwtParser = Jwts.parserBuilder()
+      .setSigningKey(signingKey)
+      .build();
   }
 
   /**
    * Generates a JWT token with custom claims and username.
    *
-   * @param claims   additional claims to include in the token
-   * @param email the subject (user's email) of the token
+   * @param claims additional claims to include in the token
+   * @param email  the subject (user's email) of the token
    * @return the generated JWT token string
    */
   public String generateToken(Map<String, Object> claims, String email) {
@@ -47,10 +74,22 @@ public class JwtService {
       .setSubject(email)
       .setIssuedAt(new Date(System.currentTimeMillis()))
       .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-      .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+      .signWith(signingKey, SignatureAlgorithm.HS256)
       .compact();
   }
 
+  /**
+   * Generates a short-lived access token for a user. Besides the subject (email), it carries the
+   * user's ID and name, so that authenticated requests can be served without loading the user.
+   *
+   * @param user the authenticated user
+   * @return the generated JWT token string
+   */
+  public String generateAccessToken(User user) {
+    return generateToken(Map.of(CLAIM_USER_ID, user.getId(), CLAIM_NAME, user.getName()),
+      user.getEmail());
+  }
+
   /**
    * Extracts the username from a JWT token.
    *
@@ -69,13 +108,24 @@ public class JwtService {
    * @return the extracted claim value
    */
   public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-    final Claims claims =
-      Jwts.parserBuilder()
-        .setSigningKey(getSigningKey())
-        .build()
-        .parseClaimsJws(token)
-        .getBody();
-    return claimsResolver.apply(claims);
+    return claimsResolver.apply(extractAllClaims(token));
+  }
+
+  /**
+   * Verifies a JWT token's signature and expiration once and returns all of its claims. Tokens
+   * already verified are served from the verified-token cache without a signature check.
+   *
+   * @param token the JWT token
+   * @return the verified claims
+   * @throws JwtException if the token is malformed, has an invalid signature, or has expired
+   */
+  public Claims extractAllClaims(String token) {
+    Claims claims = verifiedTokenCache.get(token);
+    if (claims == null) {
+      claims = jwtParser.parseClaimsJws(token).getBody();
+      verifiedTokenCache.put(token, claims);
+    }
+    return claims;
   }
 
   /**
@@ -86,16 +136,27 @@ public class JwtService {
    * @return true if token is valid and not expired, false otherwise
    */
   public boolean isTokenValid(String token, String username) {
-    return username.equals(extractUsername(token)) && !isTokenExpired(token);
+    return isTokenValid(extractAllClaims(token), username);
   }
 
   /**
-   * Checks if a JWT token has expired.
+   * Validates already verified claims against a username and expiration.
    *
-   * @param token the JWT token
+   * @param claims   the verified token claims
+   * @param username the expected username
+   * @return true if claims belong to the user and are not expired, false otherwise
+   */
+  public boolean isTokenValid(Claims claims, String username) {
+    return username.equals(claims.getSubject()) && !isTokenExpired(claims);
+  }
+
+  /**
+   * Checks if verified token claims have expired.
+   *
+   * @param claims the verified token claims
    * @return true if token is expired, false otherwise
    */
-  private boolean isTokenExpired(String token) {
-    return extractClaim(token, Claims::getExpiration).before(new Date());
+  private boolean isTokenExpired(Claims claims) {
+    return claims.getExpiration().before(new Date());
   }
 }
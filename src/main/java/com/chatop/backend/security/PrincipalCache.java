@@ -0,0 +1,128 @@
+package com.chatop.backend.security;
+
+import com.chatop.backend.cache.BoundedTtlCache;
+import com.chatop.backend.model.User;
+import com.chatop.backend.service.UserChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Date;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Caches the users resolved from verified JWTs so that authenticated requests do not need a
+ * {@code users} table lookup each time. Entries are keyed by token subject and issue time, expire
+ * after a configurable TTL (or when the token itself expires), and are evicted by size. Entries for
+ * a user are invalidated once a change to that user has committed.
+ * <p>
+ * Only an immutable snapshot of the user's identity (ID, email, and name) is cached, and every
+ * lookup returns a fresh {@link User} built from it, so requests never share a principal instance.
+ */
+@Slf4j
+@Component
+public class PrincipalCache {
+
+  private final BoundedTtlCache<PrincipalKey, Principal> cache;
+
+  /**
+   * Creates the principal cache and registers its metrics.
+   *
+   * @param maxSize       maximum number of cached principals
+   * @param ttlSeconds    maximum lifetime of a cached principal in seconds
+   * @param meterRegistry registry used to publish cache statistics
+   */
+  public PrincipalCache(
+    @Value("${jwt.principal-cache.max-size}") int maxSize,
+    @Value("${jwt.principal-cache.ttl-seconds}") long ttlSeconds,
+    MeterRegistry meterRegistry) {
+    this.cache = new BoundedTtlCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+    this.cache.bindMetrics(meterRegistry, "jwt.principals");
+  }
+
+  /**
+   * Returns the user for a verified token, loading it on a miss. A loaded user is cached until the
+   * token expires, unless the user is invalidated while it is being loaded: the loaded copy may
+   * then predate the change, so it is returned but not cached.
+   *
+   * @param subject   the token subject (user's email)
+   * @param issuedAt  the token's issue time
+   * @param expiresAt the token's expiration time
+   * @param loader    function loading the user by email (null if not found)
+   * @return a new principal for the user, or null if no such user exists
+   */
+  public User getOrLoad(String subject, Date issuedAt, Date expiresAt,
+    Function<String, User> loader) {
+    Principal principal = cache.getOrLoad(new PrincipalKey(subject, issuedAt),
+      key -> {
+        User user = loader.apply(key.subject());
+        return user != null ? Principal.of(user) : null;
+      },
+      expiresAt.getTime());
+    return principal != null ? principal.toUser() : null;
+  }
+
+  /**
+   * Drops a user's cached principals once the transaction that changed the user has committed.
+   * Runs immediately when the change was made outside a transaction.
+   *
+   * @param event the user change notification
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    invalidate(event.email());
+  }
+
+  /**
+   * Drops every cached principal for a user, whatever token it was resolved from.
+   *
+   * @param subject the user's email
+   */
+  public void invalidate(String subject) {
+    cache.invalidateIf(key -> key.subject().equals(subject));
+    log.debug("Invalidated cached principals for {}", subject);
+  }
+
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  public long getEvictionCount() {
+    return cache.getEvictionCount();
+  }
+
+  /**
+   * Immutable identity of a cached user.
+   */
+  private record Principal(Long id, String email, String name) {
+
+    private static Principal of(User user) {
+      return new Principal(user.getId(), user.getEmail(), user.getName());
+    }
+
+    private User toUser() {
+      User user = new User();
+      user.setId(id);
+      user.setEmail(email);
+      user.setName(name);
+      return user;
+    }
+  }
+
+  /**
+   * Cache key: token subject plus issue time (seconds precision, as encoded in the JWT).
+   */
+  private record PrincipalKey(String subject, long issuedAtMillis) {
+
+    private PrincipalKey(String subject, Date issuedAt) {
+      this(subject, issuedAt != null ? issuedAt.getTime() : 0L);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.chatop.backend.security;
+
+import com.chatop.backend.cache.BoundedTtlCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Optional cache of verified JWT claims, placed in front of the HMAC signature check in
+ * {@link JwtService}. Tokens are keyed by their SHA-256 digest (so raw tokens are never retained)
+ * and their claims are kept until the token expires. The cache is size-bounded and lock-striped, so
+ * repeat requests with the same bearer token skip signature verification entirely.
+ * <p>
+ * jjwt's {@link Claims} are mutable maps, so the cache keeps an unmodifiable copy of them and hands
+ * every caller its own {@link Claims} built from that copy. Claim values are JSON scalars (strings
+ * and numbers, dates being stored as epoch seconds), so the copy is shallow.
+ */
+@Component
+public class VerifiedTokenCache {
+
+  /**
+   * Approximate heap cost of one entry: digest key, cache node, and parsed claims map.
+   */
+  private static final long ESTIMATED_ENTRY_BYTES = 512;
+
+  private final boolean enabled;
+  private final BoundedTtlCache<TokenDigest, Map<String, Object>> cache;
+
+  /**
+   * Creates the verified-token cache and registers its metrics.
+   *
+   * @param enabled       whether verified tokens are cached at all
+   * @param maxSize       maximum number of cached tokens
+   * @param jwtExpiration token lifetime in milliseconds, used as the upper bound for entries
+   * @param meterRegistry registry used to publish hit ratio and memory footprint
+   */
+  public VerifiedTokenCache(
+    @Value("${jwt.token-cache.enabled}") boolean enabled,
+    @Value("${jwt.token-cache.max-size}") int maxSize,
+    @Value("${jwt.expiration}") long jwtExpiration,
+    MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.cache = new BoundedTtlCache<>(maxSize, Duration.ofMillis(jwtExpiration));
+
+    if (enabled) {
+      cache.bindMetrics(meterRegistry, "jwt.tokens");
+      Gauge.builder("jwt.token.cache.hit.ratio", cache, BoundedTtlCache::getHitRatio)
+        .description("Share of bearer tokens served without signature verification")
+        .register(meterRegistry);
+      Gauge.builder("jwt.token.cache.memory", this, VerifiedTokenCache::getEstimatedMemoryBytes)
+        .description("Estimated heap used by cached token claims")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    }
+  }
+
+  /**
+   * Returns the cached claims for a raw token, if it was verified before and has not expired.
+   *
+   * @param token the raw JWT
+   * @return a copy of the previously verified claims, or null on a miss (or when caching is
+   * disabled)
+   */
+  public Claims get(String token) {
+    if (!enabled) {
+      return null;
+    }
+    Map<String, Object> claims = cache.get(TokenDigest.of(token));
+    return claims != null ? Jwts.claims(claims) : null;
+  }
+
+  /**
+   * Caches the claims of a freshly verified token until that token expires.
+   *
+   * @param token  the raw JWT
+   * @param claims the verified claims
+   */
+  public void put(String token, Claims claims) {
+    if (!enabled || claims.getExpiration() == null) {
+      return;
+    }
+    cache.put(TokenDigest.of(token), Collections.unmodifiableMap(new LinkedHashMap<>(claims)),
+      claims.getExpiration().getTime());
+  }
+
+  public double getHitRatio() {
+    return cache.getHitRatio();
+  }
+
+  /**
+   * Returns a rough estimate of the heap held by cached entries.
+   *
+   * @return estimated memory footprint in bytes
+   */
+  public long getEstimatedMemoryBytes() {
+    return cache.size() * ESTIMATED_ENTRY_BYTES;
+  }
+
+  /**
+   * SHA-256 digest of a raw token, stored as four longs to keep keys compact.
+   */
+  private record TokenDigest(long part1, long part2, long part3, long part4) {
+
+    private static TokenDigest of(String token) {
+      try {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new TokenDigest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+      } catch (NoSuchAlgorithmException e) {
+        // SHA-256 is mandatory on every Java platform
+        throw new IllegalStateException("SHA-256 not available", e);
+      }
+    }
+  }
+}
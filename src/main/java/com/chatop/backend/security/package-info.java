@@ -8,6 +8,7 @@
  * <ul>
  *   <li>{@link com.chatop.backend.security.JwtService}</li>
  *   <li>{@link com.chatop.backend.security.JwtAuthenticationFilter}</li>
+ *   <li>{@link com.chatop.backend.security.PrincipalCache}</li>
  *   <li>Spring Security configuration beans</li>
  * </ul>
  */
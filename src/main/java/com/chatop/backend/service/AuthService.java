@@ -1,24 +1,28 @@
 package com.chatop.backend.service;
 
+import com.chatop.backend.exception.ServiceOverloadedException;
 import com.chatop.backend.model.User;
 import com.chatop.backend.repository.UserRepository;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 /**
  * Service handling user authentication and registration operations.
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuthService implements UserDetailsService {
 
   private final UserRepository userRepository;
-  private final PasswordEncoder passwordEncoder;
+  private final PasswordHashingService passwordHashingService;
+  private final ApplicationEventPublisher eventPublisher;
 
   /**
    * Registers a new user with encrypted password.
@@ -27,7 +31,8 @@ public class AuthService implements UserDetailsService {
    * @param name        the user's display name
    * @param rawPassword the user's plain text password
    * @return the created User entity
-   * @throws IllegalArgumentException if email is already in use
+   * @throws IllegalArgumentException    if email is already in use
+   * @throws ServiceOverloadedException if too many passwords are being hashed
    */
   public User registerUser(String email, String name, String rawPassword) {
     if (userRepository.existsByEmail(email)) {
@@ -37,7 +42,7 @@ public class AuthService implements UserDetailsService {
     User user = new User();
     user.setEmail(email);
     user.setName(name);
-    user.setPassword(passwordEncoder.encode(rawPassword));
+    user.setPassword(passwordHashingService.encode(rawPassword));
 
     return userRepository.save(user);
   }
@@ -71,9 +76,36 @@ public class AuthService implements UserDetailsService {
    * @param rawPassword     the plain text password to validate
    * @param encodedPassword the stored encrypted password
    * @return true if the passwords match, false otherwise
+   * @throws ServiceOverloadedException if too many passwords are being verified
    */
   public boolean passwordIsValid(String rawPassword, String encodedPassword) {
-    return passwordEncoder.matches(rawPassword, encodedPassword);
+    return passwordHashingService.matches(rawPassword, encodedPassword);
+  }
+
+  /**
+   * Re-hashes a user's password with the current algorithm and cost if the stored hash is
+   * outdated. Must only be called once the password has been verified. Skipped (and retried on a
+   * later login) when the hashing executor is saturated.
+   *
+   * @param user        the authenticated user
+   * @param rawPassword the verified plain text password
+   */
+  public void upgradePasswordEncoding(User user, String rawPassword) {
+    String currentPassword = user.getPassword();
+    if (!passwordHashingService.upgradeEncoding(currentPassword)) {
+      return;
+    }
+
+    try {
+      String newPassword = passwordHashingService.encode(rawPassword);
+      if (userRepository.updatePassword(user.getId(), currentPassword, newPassword) > 0) {
+        // Evicts cached principals once committed
+        eventPublisher.publishEvent(new UserChangedEvent(user.getEmail()));
+        log.debug("Upgraded password hash of user {}", user.getId());
+      }
+    } catch (ServiceOverloadedException e) {
+      log.debug("Password hash upgrade of user {} postponed: {}", user.getId(), e.getMessage());
+    }
   }
 
 }
@@ -0,0 +1,55 @@
+package com.chatop.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a keyset-paginated listing ordered by creation time then ID, both descending. Sent to
+ * clients as an opaque URL-safe token and decoded back on the next page request.
+ *
+ * @param createdAt creation timestamp of the last item returned
+ * @param id        ID of the last item returned (tie-breaker for equal timestamps)
+ */
+public record KeysetCursor(LocalDateTime createdAt, long id) {
+
+  /**
+   * Separator between the timestamp and the ID inside the decoded token
+   */
+  private static final char SEPARATOR = '|';
+
+  /**
+   * Encodes the cursor into an opaque URL-safe token.
+   *
+   * @return the cursor token
+   */
+  public String encode() {
+    String raw = createdAt.toString() + SEPARATOR + id;
+    return Base64.getUrlEncoder().withoutPadding()
+      .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a cursor token received from a client.
+   *
+   * @param token the cursor token
+   * @return the decoded cursor
+   * @throws IllegalArgumentException if the token is malformed
+   */
+  public static KeysetCursor decode(String token) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int separator = raw.lastIndexOf(SEPARATOR);
+      if (separator < 0) {
+        throw new IllegalArgumentException("Invalid cursor: " + token);
+      }
+      return new KeysetCursor(
+        LocalDateTime.parse(raw.substring(0, separator)),
+        Long.parseLong(raw.substring(separator + 1)));
+    } catch (DateTimeParseException | NumberFormatException e) {
+      // Base64 errors are already IllegalArgumentExceptions; normalize the others
+      throw new IllegalArgumentException("Invalid cursor: " + token, e);
+    }
+  }
+}
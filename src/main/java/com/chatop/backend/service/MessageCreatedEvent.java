@@ -0,0 +1,16 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.repository.MessageView;
+
+/**
+ * Published whenever a message is inserted, by {@link MessageService} or by the batched writer of
+ * {@link MessageIngestionService}. {@link MessageStreamService} pushes it to the rental owner's
+ * open streams once the insert has committed.
+ *
+ * @param message the inserted message
+ * @param ownerId owner of the message's rental, whose streams receive it (null for messages
+ *                journaled before owners were, which are only replayed)
+ */
+public record MessageCreatedEvent(MessageView message, Long ownerId) {
+
+}
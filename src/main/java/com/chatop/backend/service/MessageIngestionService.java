@@ -0,0 +1,630 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.exception.ServiceOverloadedException;
+import com.chatop.backend.repository.MessageView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Optional write-behind ingestion of messages (enabled with {@code app.messages.batching.enabled}).
+ * <p>
+ * Accepted messages are appended to a local journal and put in a bounded in-memory queue, and the
+ * request returns without touching the database. A single writer thread drains the queue and
+ * inserts messages with one multi-row {@code INSERT} per batch, flushing as soon as a batch is
+ * full or its oldest message has waited the configured latency. When the queue is full, new
+ * messages are rejected with {@link ServiceOverloadedException} (503 with {@code Retry-After}).
+ * <p>
+ * The journal makes accepted messages survive a crash: every message is recorded with a sequence
+ * number before it is queued, and a checkpoint with the last inserted sequence number is recorded
+ * after each batch. On startup, the messages past the last checkpoint are kept in the journal and
+ * inserted again by the writer thread ahead of new ones, so startup never waits for the database.
+ * A batch is only removed from the journal by its checkpoint, so a failure never discards it. The
+ * journal is truncated whenever every journaled message has been inserted.
+ * <p>
+ * An insert and its checkpoint are not atomic: a crash between them, a checkpoint that fails to be
+ * written, or an insert whose commit is acknowledged too late to be seen replays messages that are
+ * already stored. Each message therefore carries a random ingest ID, journaled with it and stored
+ * in the unique {@code messages.ingest_id} column, and rows whose ingest ID is already present are
+ * skipped, so replays never create duplicates.
+ * <p>
+ * Messages violating a database constraint (e.g. a rental deleted meanwhile) are dropped and
+ * counted; other database failures are retried until the database is back.
+ */
+@Slf4j
+@Service
+public class MessageIngestionService {
+
+  /**
+   * Name of the journal file inside the journal directory
+   */
+  private static final String JOURNAL_FILE = "messages.journal";
+
+  /**
+   * Journal record types: an accepted message, or the last sequence number inserted
+   */
+  private static final String MESSAGE_RECORD = "M";
+  private static final String CHECKPOINT_RECORD = "C";
+
+  /**
+   * Multi-row insert; the rental owner is copied from the rentals table (null, and so rejected by
+   * the constraint, when the rental no longer exists), and rows already inserted before a replay
+   * are left unchanged
+   */
+  private static final String INSERT_PREFIX = "insert into messages "
+    + "(rental_id, user_id, owner_id, message, created_at, updated_at, ingest_id) values ";
+  private static final String ROW_PLACEHOLDERS =
+    "(?, ?, (select r.owner_id from rentals r where r.id = ?), ?, ?, ?, ?)";
+  private static final String INSERT_SUFFIX = " on duplicate key update id = id";
+  private static final int ROW_ARGUMENTS = 7;
+
+  /**
+   * Delay between attempts while the database is unavailable
+   */
+  private static final long RETRY_DELAY_MILLIS = 1000;
+
+  /**
+   * Delay suggested to rejected clients before retrying
+   */
+  private static final long RETRY_AFTER_SECONDS = 1;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ApplicationEventPublisher eventPublisher;
+  private final boolean enabled;
+  private final int batchSize;
+  private final long maxLatencyMillis;
+  private final boolean fsync;
+  private final ArrayBlockingQueue<PendingMessage> queue;
+
+  /**
+   * Serializes journal appends with sequence numbering and queueing, so the queue order matches
+   * the sequence order (a checkpoint then covers every message before it)
+   */
+  private final ReentrantLock journalLock = new ReentrantLock();
+
+  private final Counter acceptedCounter;
+  private final Counter rejectedCounter;
+  private final Counter droppedCounter;
+  private final DistributionSummary batchSizeSummary;
+
+  // Directory holding the message journal, injected from application properties.
+  @Value("${app.messages.batching.journal-dir}")
+  private String journalDir;
+
+  private FileChannel journal;
+  private long lastSequence;
+  private Thread writer;
+  private volatile boolean running;
+
+  /**
+   * Creates the ingestion queue and registers its metrics.
+   *
+   * @param jdbcTemplate     template used for the batched inserts
+   * @param eventPublisher   publisher of the inserted messages
+   * @param meterRegistry    registry used to publish queue depth, batch sizes, and outcomes
+   * @param enabled          whether messages are ingested through the queue at all
+   * @param queueCapacity    maximum number of messages waiting to be inserted
+   * @param batchSize        maximum number of messages per insert
+   * @param maxLatencyMillis maximum time a message waits for its batch to fill up
+   * @param fsync            whether every journal append is forced to disk
+   */
+  public MessageIngestionService(
+    JdbcTemplate jdbcTemplate,
+    ApplicationEventPublisher eventPublisher,
+    MeterRegistry meterRegistry,
+    @Value("${app.messages.batching.enabled}") boolean enabled,
+    @Value("${app.messages.batching.queue-capacity}") int queueCapacity,
+    @Value("${app.messages.batching.batch-size}") int batchSize,
+    @Value("${app.messages.batching.max-latency-ms}") long maxLatencyMillis,
+    @Value("${app.messages.batching.fsync}") boolean fsync) {
+    if (batchSize < 1 || maxLatencyMillis < 1) {
+      throw new IllegalArgumentException("Message batch size and latency must be positive");
+    }
+    this.jdbcTemplate = jdbcTemplate;
+    this.eventPublisher = eventPublisher;
+    this.enabled = enabled;
+    this.batchSize = batchSize;
+    this.maxLatencyMillis = maxLatencyMillis;
+    this.fsync = fsync;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+    Gauge.builder("messages.ingest.queue.depth", queue, ArrayBlockingQueue::size)
+      .description("Accepted messages waiting to be inserted")
+      .register(meterRegistry);
+    this.acceptedCounter = Counter.builder("messages.ingest.accepted")
+      .description("Messages accepted into the ingestion queue")
+      .register(meterRegistry);
+    this.rejectedCounter = Counter.builder("messages.ingest.rejected")
+      .description("Messages rejected because the ingestion queue was full")
+      .register(meterRegistry);
+    this.droppedCounter = Counter.builder("messages.ingest.dropped")
+      .description("Accepted messages dropped because they violated a database constraint")
+      .register(meterRegistry);
+    this.batchSizeSummary = DistributionSummary.builder("messages.ingest.batch.size")
+      .description("Messages inserted per batch")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Opens the journal and starts the writer thread, which first inserts the messages a previous run
+   * accepted but did not insert. Does nothing when batching is disabled.
+   */
+  @PostConstruct
+  void start() {
+    if (!enabled) {
+      return;
+    }
+
+    Path journalPath = Paths.get(journalDir).toAbsolutePath().normalize().resolve(JOURNAL_FILE);
+    List<PendingMessage> replayed;
+    try {
+      Files.createDirectories(journalPath.getParent());
+      replayed = readJournal(journalPath);
+      rewriteJournal(journalPath, replayed);
+      journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      // Log and rethrow as unchecked exception to fail startup
+      log.error("Failed to initialize message journal: {}", journalPath, e);
+      throw new IllegalStateException("Could not initialize message journal: " + journalPath, e);
+    }
+
+    running = true;
+    writer = new Thread(() -> writeLoop(replayed), "message-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Indicates whether messages should go through the ingestion queue.
+   *
+   * @return true if batched ingestion is enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Journals and queues a message for insertion.
+   *
+   * @param userId   the sender's ID
+   * @param userName the sender's name, for {@link MessageCreatedEvent} listeners
+   * @param rentalId the rental the message refers to
+   * @param ownerId  the rental's owner, for {@link MessageCreatedEvent} listeners
+   * @param message  the message content
+   * @throws ServiceOverloadedException if the queue is full
+   * @throws IllegalStateException      if the message cannot be journaled
+   */
+  public void submit(Long userId, String userName, Long rentalId, Long ownerId, String message) {
+    journalLock.lock();
+    try {
+      if (!running) {
+        throw new IllegalStateException("Message ingestion is not running");
+      }
+      // Only this method adds to the queue, under the lock, so the check cannot go stale
+      if (queue.remainingCapacity() == 0) {
+        rejectedCounter.increment();
+        throw new ServiceOverloadedException("Message queue is full", RETRY_AFTER_SECONDS);
+      }
+
+      PendingMessage pending = new PendingMessage(++lastSequence, UUID.randomUUID().toString(),
+        userId, userName, rentalId, ownerId, message, LocalDateTime.now());
+      append(pending.toRecord());
+      queue.add(pending);
+      acceptedCounter.increment();
+
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to journal message", e);
+    } finally {
+      journalLock.unlock();
+    }
+  }
+
+  /**
+   * Stops accepting messages, inserts the queued ones, and closes the journal. Messages that could
+   * not be inserted stay in the journal for the next start.
+   */
+  @PreDestroy
+  void stop() {
+    if (!enabled) {
+      return;
+    }
+
+    journalLock.lock();
+    try {
+      running = false;
+    } finally {
+      journalLock.unlock();
+    }
+
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(30));
+      journal.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      log.warn("Failed to close message journal: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Inserts the messages left from the previous run, then batches from the queue, until stopped
+   * and drained. A batch is kept until it is checkpointed.
+   */
+  private void writeLoop(List<PendingMessage> replayed) {
+    List<PendingMessage> batch = new ArrayList<>(batchSize);
+    int replayedCount = 0;
+    while (running || !queue.isEmpty()) {
+      try {
+        if (batch.isEmpty()) {
+          if (replayedCount < replayed.size()) {
+            int end = Math.min(replayedCount + batchSize, replayed.size());
+            batch.addAll(replayed.subList(replayedCount, end));
+            replayedCount = end;
+          } else if (!collect(batch)) {
+            continue;
+          }
+        }
+
+        if (!insert(batch)) {
+          // Stopped while the database was unavailable: the journal keeps the rest
+          log.error("Stopping with {} messages not inserted; they will be inserted on restart",
+            batch.size() + replayed.size() - replayedCount + queue.size());
+          return;
+        }
+        checkpoint(batch.get(batch.size() - 1).sequence());
+        batch.clear();
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        // Never let the writer die, nor drop the batch: it is not checkpointed, so retry it
+        log.error("Unexpected message writer failure, retrying {} messages: {}", batch.size(),
+          e.getMessage(), e);
+        if (!running) {
+          return;
+        }
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits for queued messages until the batch is full or its first message has waited long enough.
+   *
+   * @return false if no message arrived within the maximum latency
+   */
+  private boolean collect(List<PendingMessage> batch) throws InterruptedException {
+    PendingMessage first = queue.poll(maxLatencyMillis, TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return false;
+    }
+
+    batch.add(first);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+    while (batch.size() < batchSize) {
+      queue.drainTo(batch, batchSize - batch.size());
+      long remaining = deadline - System.nanoTime();
+      if (batch.size() >= batchSize || remaining <= 0) {
+        break;
+      }
+      PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+    }
+    return true;
+  }
+
+  /**
+   * Inserts a batch, retrying while the database is unavailable. If the batch violates a
+   * constraint, messages are inserted one by one and the offending ones are dropped.
+   *
+   * @return true once the batch is handled, false if stopped before the database came back
+   */
+  private boolean insert(List<PendingMessage> batch) throws InterruptedException {
+    try {
+      if (!insertRetrying(batch)) {
+        return false;
+      }
+      batchSizeSummary.record(batch.size());
+      return true;
+    } catch (DataIntegrityViolationException e) {
+      return insertOneByOne(batch);
+    }
+  }
+
+  /**
+   * Inserts messages one by one, dropping those violating a constraint. When stopped midway, the
+   * messages already handled are checkpointed so that a restart does not insert them twice.
+   */
+  private boolean insertOneByOne(List<PendingMessage> batch) throws InterruptedException {
+    for (int i = 0; i < batch.size(); i++) {
+      PendingMessage pending = batch.get(i);
+      try {
+        if (!insertRetrying(List.of(pending))) {
+          if (i > 0) {
+            checkpoint(batch.get(i - 1).sequence());
+          }
+          return false;
+        }
+      } catch (DataIntegrityViolationException e) {
+        droppedCounter.increment();
+        log.warn("Dropped message from user {} about rental {}: {}", pending.userId(),
+          pending.rentalId(), e.getMostSpecificCause().getMessage());
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Inserts messages, retrying other failures than constraint violations while the database is
+   * unavailable.
+   *
+   * @return true once inserted, false if stopped before the database came back
+   * @throws DataIntegrityViolationException if a message violates a constraint
+   */
+  private boolean insertRetrying(List<PendingMessage> rows) throws InterruptedException {
+    while (true) {
+      try {
+        insertRows(rows);
+        return true;
+      } catch (DataIntegrityViolationException e) {
+        throw e;
+      } catch (DataAccessException e) {
+        log.warn("Failed to insert {} messages, retrying: {}", rows.size(), e.getMessage());
+        if (!running) {
+          return false;
+        }
+        Thread.sleep(RETRY_DELAY_MILLIS);
+      }
+    }
+  }
+
+  /**
+   * Inserts messages with a single multi-row statement (one round trip, unlike IDENTITY-keyed
+   * entity saves, which Hibernate cannot batch), then publishes a {@link MessageCreatedEvent} for
+   * each of them with its generated ID.
+   */
+  private void insertRows(List<PendingMessage> rows) {
+    StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+    Object[] arguments = new Object[rows.size() * ROW_ARGUMENTS];
+    int index = 0;
+    for (PendingMessage row : rows) {
+      sql.append(index == 0 ? "" : ", ").append(ROW_PLACEHOLDERS);
+      Timestamp createdAt = Timestamp.valueOf(row.createdAt());
+      arguments[index++] = row.rentalId();
+      arguments[index++] = row.userId();
+      arguments[index++] = row.rentalId();
+      arguments[index++] = row.message();
+      arguments[index++] = createdAt;
+      arguments[index++] = createdAt;
+      arguments[index++] = row.ingestId();
+    }
+    sql.append(INSERT_SUFFIX);
+    KeyHolder keyHolder = new GeneratedKeyHolder();
+    jdbcTemplate.update(connection -> {
+      PreparedStatement statement =
+        connection.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS);
+      new ArgumentPreparedStatementSetter(arguments).setValues(statement);
+      return statement;
+    }, keyHolder);
+
+    // A multi-row insert gets consecutive keys, reported in row order; rows skipped as already
+    // inserted get none, and the keys can then no longer be matched to the rows
+    List<Map<String, Object>> keys = keyHolder.getKeyList();
+    if (keys.size() != rows.size()) {
+      log.info("{} of {} messages were already inserted, not publishing the batch",
+        rows.size() - keys.size(), rows.size());
+      return;
+    }
+    for (int row = 0; row < rows.size(); row++) {
+      Number id = (Number) keys.get(row).values().iterator().next();
+      try {
+        PendingMessage pending = rows.get(row);
+        eventPublisher.publishEvent(
+          new MessageCreatedEvent(pending.toView(id.longValue()), pending.ownerId()));
+      } catch (RuntimeException e) {
+        // The message is stored: a failing listener must not get it inserted again
+        log.warn("Failed to publish message {}: {}", id, e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Records that every message up to a sequence number is inserted, and empties the journal when
+   * nothing else is pending.
+   */
+  private void checkpoint(long sequence) {
+    journalLock.lock();
+    try {
+      if (queue.isEmpty() && sequence == lastSequence) {
+        journal.truncate(0);
+      } else {
+        append(CHECKPOINT_RECORD + " " + sequence);
+      }
+    } catch (IOException e) {
+      // The next checkpoint covers these messages; a crash before it replays them, and the
+      // database skips them by their ingest ID
+      log.warn("Failed to checkpoint message journal: {}", e.getMessage());
+    } finally {
+      journalLock.unlock();
+    }
+  }
+
+  /**
+   * Appends one record to the journal. Called with the journal lock held.
+   */
+  private void append(String record) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      journal.write(buffer);
+    }
+    if (fsync) {
+      journal.force(false);
+    }
+  }
+
+  /**
+   * Reads the journaled messages past the last checkpoint, left over from a previous run, and
+   * continues their sequence numbering.
+   */
+  private List<PendingMessage> readJournal(Path journalPath) throws IOException {
+    List<PendingMessage> pending = new ArrayList<>();
+    if (!Files.exists(journalPath)) {
+      return pending;
+    }
+
+    long checkpoint = 0;
+    List<PendingMessage> journaled = new ArrayList<>();
+    for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+      String[] fields = line.split(" ");
+      try {
+        if (fields[0].equals(CHECKPOINT_RECORD) && fields.length == 2) {
+          checkpoint = Math.max(checkpoint, Long.parseLong(fields[1]));
+        } else if (fields[0].equals(MESSAGE_RECORD)
+          && fields.length >= 6 && fields.length <= 9) {
+          journaled.add(PendingMessage.fromRecord(fields));
+        }
+      } catch (IllegalArgumentException e) {
+        // Torn write at the end of the journal
+        log.warn("Skipping unreadable message journal record");
+      }
+    }
+
+    for (PendingMessage message : journaled) {
+      lastSequence = Math.max(lastSequence, message.sequence());
+      if (message.sequence() > checkpoint) {
+        pending.add(message);
+      }
+    }
+    if (!pending.isEmpty()) {
+      log.info("{} journaled messages left from the previous run will be inserted",
+        pending.size());
+    }
+    return pending;
+  }
+
+  /**
+   * Replaces the journal with the messages still to insert, atomically so that a crash meanwhile
+   * leaves either journal in place.
+   */
+  private void rewriteJournal(Path journalPath, List<PendingMessage> pending) throws IOException {
+    Path rewritten = journalPath.resolveSibling(JOURNAL_FILE + ".tmp");
+    try (FileChannel channel = FileChannel.open(rewritten, StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (PendingMessage message : pending) {
+        ByteBuffer buffer =
+          ByteBuffer.wrap((message.toRecord() + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      channel.force(false);
+    }
+    Files.move(rewritten, journalPath, StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * A message accepted but not inserted yet.
+   */
+  private record PendingMessage(
+    long sequence,
+    String ingestId,
+    Long userId,
+    String userName,
+    Long rentalId,
+    Long ownerId,
+    String message,
+    LocalDateTime createdAt
+  ) {
+
+    /**
+     * Formats the message as a journal line; texts are base64-encoded so they never contain
+     * separators or line breaks.
+     */
+    String toRecord() {
+      return String.join(" ", MESSAGE_RECORD, Long.toString(sequence), userId.toString(),
+        rentalId.toString(), createdAt.toString(), encode(message), encode(userName),
+        ownerId != null ? ownerId.toString() : "", ingestId);
+    }
+
+    /**
+     * Parses a journal line. Records written before sender names, rental owners or ingest IDs were
+     * journaled have none of them; they get a new ingest ID, which does not guard their first
+     * replay against duplicates.
+     */
+    static PendingMessage fromRecord(String[] fields) {
+      try {
+        return new PendingMessage(Long.parseLong(fields[1]),
+          fields.length > 8 ? fields[8] : UUID.randomUUID().toString(), Long.valueOf(fields[2]),
+          fields.length > 6 ? decode(fields[6]) : null, Long.valueOf(fields[3]),
+          fields.length > 7 && !fields[7].isEmpty() ? Long.valueOf(fields[7]) : null,
+          decode(fields[5]), LocalDateTime.parse(fields[4]));
+      } catch (DateTimeParseException e) {
+        throw new IllegalArgumentException("Invalid journal record", e);
+      }
+    }
+
+    /**
+     * Describes the inserted message for {@link MessageCreatedEvent} listeners.
+     */
+    MessageView toView(long id) {
+      return new MessageView(id, rentalId, userId, userName, message, createdAt);
+    }
+
+    private static String encode(String text) {
+      if (text == null) {
+        return "";
+      }
+      return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String text) {
+      return new String(Base64.getDecoder().decode(text), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -1,53 +1,211 @@
 package com.chatop.backend.service;
 
+import com.chatop.backend.dto.MessageItemResponse;
+import com.chatop.backend.dto.MessagePageResponse;
 import com.chatop.backend.dto.MessageRequest;
+import com.chatop.backend.dto.SingleRentalResponse;
 import com.chatop.backend.dto.StatusMessageResponse;
+import com.chatop.backend.exception.ResourceNotFoundException;
+import com.chatop.backend.exception.ServiceOverloadedException;
 import com.chatop.backend.model.Message;
-import com.chatop.backend.model.Rental;
 import com.chatop.backend.model.User;
 import com.chatop.backend.repository.MessageRepository;
+import com.chatop.backend.repository.MessageView;
 import com.chatop.backend.repository.RentalRepository;
 import com.chatop.backend.repository.UserRepository;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
 /**
  * Service handling message-related operations. Responsible for saving messages sent by
- * authenticated users about specific rentals.
+ * authenticated users about specific rentals, either directly or through the batched ingestion
+ * queue ({@link MessageIngestionService}), and for listing the messages rental owners received.
  */
 @Service
 @RequiredArgsConstructor
 public class MessageService {
 
+  /**
+   * Date formatter for message timestamps in API responses
+   */
+  private static final DateTimeFormatter DATE_TIME_FORMATTER =
+    DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+
   private final MessageRepository messageRepository;
   private final RentalRepository rentalRepository;
   private final UserRepository userRepository;
+  private final RentalService rentalService;
+  private final MessageIngestionService messageIngestionService;
+  private final ApplicationEventPublisher eventPublisher;
+
+  // Default number of messages per page, injected from application properties.
+  @Value("${app.messages.page-size}")
+  private int defaultPageSize;
+
+  // Upper bound on the page size a client may request, injected from application properties.
+  @Value("${app.messages.max-page-size}")
+  private int maxPageSize;
 
   /**
    * Creates and saves a new message.
    *
    * @param request the incoming message data (rental ID and content)
-   * @param userId  the authenticated user's ID
+   * @param sender  the authenticated user
    * @return confirmation response after saving
-   * @throws IllegalArgumentException if the user or rental does not exist
+   * @throws IllegalArgumentException   if the user or rental does not exist
+   * @throws ServiceOverloadedException if batched ingestion is enabled and its queue is full
    */
-  public StatusMessageResponse sendMessage(MessageRequest request, Long userId) {
-    // Fetch user and rental entities to maintain referential integrity
-    User user = userRepository.findById(userId)
-      .orElseThrow(() -> new IllegalArgumentException("User not found with ID: " + userId));
-    Rental rental = rentalRepository.findById(request.rentalId())
-      .orElseThrow(
-        () -> new IllegalArgumentException("Rental not found with ID: " + request.rentalId()));
-
-    // Create and save the message entity
+  public StatusMessageResponse sendMessage(MessageRequest request, User sender) {
+    Long userId = sender.getId();
+    // The user comes from a verified token; the rental is usually served from the cache, and its
+    // owner is copied onto the message for the owner's inbox
+    SingleRentalResponse rental = rentalService.getRentalById(request.rentalId());
+    if (rental == null) {
+      throw new IllegalArgumentException("Rental not found with ID: " + request.rentalId());
+    }
+    if (messageIngestionService.isEnabled()) {
+      messageIngestionService.submit(userId, sender.getName(), request.rentalId(),
+        rental.ownerId(), request.message());
+      return new StatusMessageResponse("Message sent with success");
+    }
+
+    // Reference user and rental by ID without loading them: the foreign key constraints reject
+    // ones deleted since they were cached
     Message message = new Message();
-    message.setUser(user);
-    message.setRental(rental);
+    message.setUser(userRepository.getReferenceById(userId));
+    message.setRental(rentalRepository.getReferenceById(request.rentalId()));
+    message.setOwnerId(rental.ownerId());
     message.setMessage(request.message());
 
-    messageRepository.save(message);
+    try {
+      messageRepository.save(message);
+    } catch (DataIntegrityViolationException e) {
+      // The user comes from a verified token, so the rental is the missing side
+      throw new IllegalArgumentException("Rental not found with ID: " + request.rentalId(), e);
+    }
+    // Pushed to the rental owner's open streams once committed
+    eventPublisher.publishEvent(new MessageCreatedEvent(new MessageView(message.getId(),
+      request.rentalId(), userId, sender.getName(), message.getMessage(), message.getCreatedAt()),
+      rental.ownerId()));
 
     return new StatusMessageResponse("Message sent with success");
   }
 
+  /**
+   * Retrieves one page of the messages about a rental, newest first. Only the rental's owner may
+   * read them.
+   *
+   * @param rentalId the rental ID
+   * @param userId   the authenticated user's ID
+   * @param cursor   opaque cursor from a previous page, or null for the first page
+   * @param size     requested page size, or null for the configured default
+   * @return the page of messages and the cursor to the next page (null on the last page)
+   * @throws ResourceNotFoundException if the rental does not exist
+   * @throws AccessDeniedException     if the user does not own the rental
+   * @throws IllegalArgumentException  if the cursor is malformed or the size is not positive
+   */
+  public MessagePageResponse getRentalMessages(Long rentalId, Long userId, String cursor,
+    Integer size) {
+    // Ownership is checked against the cached rental, without loading the entity
+    SingleRentalResponse rental = rentalService.getRentalById(rentalId);
+    if (rental == null) {
+      throw new ResourceNotFoundException("Rental not found with ID: " + rentalId);
+    }
+    if (!rental.ownerId().equals(userId)) {
+      throw new AccessDeniedException(
+        "User (ID: " + userId + ") is not the owner of rental (ID: " + rentalId + ").");
+    }
+
+    int pageSize = pageSizeOf(size);
+    // Fetch one extra row to know whether another page follows
+    Limit limit = Limit.of(pageSize + 1);
+    List<MessageView> messages;
+    if (cursor == null || cursor.isBlank()) {
+      messages = messageRepository.findFirstPageByRental(rentalId, limit);
+    } else {
+      KeysetCursor position = KeysetCursor.decode(cursor);
+      messages = messageRepository.findPageAfterByRental(
+        rentalId, position.createdAt(), position.id(), limit);
+    }
+    return toPage(messages, pageSize);
+  }
+
+  /**
+   * Retrieves one page of the messages about any rental owned by a user, newest first.
+   *
+   * @param userId the authenticated user's ID
+   * @param cursor opaque cursor from a previous page, or null for the first page
+   * @param size   requested page size, or null for the configured default
+   * @return the page of messages and the cursor to the next page (null on the last page)
+   * @throws IllegalArgumentException if the cursor is malformed or the size is not positive
+   */
+  public MessagePageResponse getInbox(Long userId, String cursor, Integer size) {
+    int pageSize = pageSizeOf(size);
+    // Fetch one extra row to know whether another page follows
+    Limit limit = Limit.of(pageSize + 1);
+    List<MessageView> messages;
+    if (cursor == null || cursor.isBlank()) {
+      messages = messageRepository.findFirstInboxPage(userId, limit);
+    } else {
+      KeysetCursor position = KeysetCursor.decode(cursor);
+      messages = messageRepository.findInboxPageAfter(
+        userId, position.createdAt(), position.id(), limit);
+    }
+    return toPage(messages, pageSize);
+  }
+
+  /**
+   * Resolves the requested page size, capped to the configured maximum.
+   */
+  private int pageSizeOf(Integer size) {
+    int pageSize = size != null ? size : defaultPageSize;
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive");
+    }
+    return Math.min(pageSize, maxPageSize);
+  }
+
+  /**
+   * Converts a result fetched with one extra row into a page, the extra row telling whether
+   * another page follows.
+   */
+  private static MessagePageResponse toPage(List<MessageView> messages, int pageSize) {
+    String nextCursor = null;
+    if (messages.size() > pageSize) {
+      messages = messages.subList(0, pageSize);
+      MessageView last = messages.get(pageSize - 1);
+      nextCursor = new KeysetCursor(last.createdAt(), last.id()).encode();
+    }
+
+    List<MessageItemResponse> items = messages.stream()
+      .map(MessageService::toMessageItem)
+      .collect(Collectors.toList());
+
+    return new MessagePageResponse(items, nextCursor);
+  }
+
+  /**
+   * Converts a message projection into the DTO returned by the listing and stream endpoints.
+   *
+   * @param message the message projection to convert
+   * @return a DTO representing the message
+   */
+  static MessageItemResponse toMessageItem(MessageView message) {
+    return new MessageItemResponse(
+      message.id(),
+      message.rentalId(),
+      message.userId(),
+      message.userName(),
+      message.message(),
+      message.createdAt() != null ? message.createdAt().format(DATE_TIME_FORMATTER) : null);
+  }
+
 }
@@ -0,0 +1,375 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.dto.MessageItemResponse;
+import com.chatop.backend.exception.ServiceOverloadedException;
+import com.chatop.backend.repository.MessageRepository;
+import com.chatop.backend.repository.MessageView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes new messages to rental owners over Server-Sent Events.
+ * <p>
+ * Streams are asynchronous requests: an idle stream holds a connection but no thread. Each stream
+ * has a bounded buffer, filled by {@link #onMessageCreated} once a message commits and drained by
+ * a small shared pool of dispatcher threads, so a slow client never blocks the publisher or the
+ * other streams. A stream whose buffer overflows is closed; the client reconnects with the
+ * {@code Last-Event-ID} header (the ID of the last message it received) and the messages it missed
+ * are replayed from the database. Heartbeat comments keep idle connections open through proxies
+ * and detect clients that went away.
+ * <p>
+ * Neither message IDs nor creation times follow commit order (a message created earlier, or given
+ * a lower ID, may commit later, especially with batched ingestion), so the replay also resends the
+ * messages created shortly before the last one received. Clients ignore the messages whose ID they
+ * already have.
+ * <p>
+ * Subscribers are tracked in memory, so only streams connected to the instance that inserted a
+ * message receive it live; clients connected elsewhere get it on their next reconnection.
+ */
+@Slf4j
+@Service
+public class MessageStreamService {
+
+  /**
+   * Event name of message events, and of the event telling a client that too many messages were
+   * missed to be replayed (the inbox should be reloaded instead)
+   */
+  private static final String MESSAGE_EVENT = "message";
+  private static final String RESYNC_EVENT = "resync";
+
+  /**
+   * Delay suggested to clients rejected because too many streams are open
+   */
+  private static final long RETRY_AFTER_SECONDS = 5;
+
+  /**
+   * Time before the last received message that is replayed again, covering messages committed
+   * after later ones, clock differences between instances, and second-precision timestamps
+   */
+  private static final Duration REPLAY_OVERLAP = Duration.ofMinutes(1);
+
+  private final MessageRepository messageRepository;
+  private final ThreadPoolExecutor dispatcher;
+  private final int maxConnections;
+  private final int bufferSize;
+  private final long timeoutMillis;
+  private final int replayLimit;
+
+  /**
+   * Open streams, keyed by the ID of the user they belong to
+   */
+  private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+  private final AtomicInteger connections = new AtomicInteger();
+
+  private final Counter deliveredCounter;
+  private final Counter droppedCounter;
+
+  /**
+   * Creates the stream hub and registers its metrics.
+   *
+   * @param messageRepository repository used to replay missed messages
+   * @param meterRegistry     registry used to publish connection and delivery counts
+   * @param threads           number of dispatcher threads writing to streams
+   * @param maxConnections    maximum number of open streams (more are rejected with 503)
+   * @param bufferSize        maximum number of events waiting to be written to one stream
+   * @param timeoutMillis     lifetime of a stream before the client has to reconnect
+   * @param replayLimit       maximum number of missed messages replayed on reconnection
+   */
+  public MessageStreamService(
+    MessageRepository messageRepository,
+    MeterRegistry meterRegistry,
+    @Value("${app.messages.stream.threads}") int threads,
+    @Value("${app.messages.stream.max-connections}") int maxConnections,
+    @Value("${app.messages.stream.buffer-size}") int bufferSize,
+    @Value("${app.messages.stream.timeout-ms}") long timeoutMillis,
+    @Value("${app.messages.stream.replay-limit}") int replayLimit) {
+    this.messageRepository = messageRepository;
+    this.maxConnections = maxConnections;
+    this.bufferSize = bufferSize;
+    this.timeoutMillis = timeoutMillis;
+    this.replayLimit = replayLimit;
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.dispatcher = new ThreadPoolExecutor(
+      threads, threads, 0L, TimeUnit.MILLISECONDS,
+      // Holds at most one drain task per stream, so it is bounded by maxConnections
+      new LinkedBlockingQueue<>(),
+      runnable -> {
+        Thread thread = new Thread(runnable, "message-stream-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    Gauge.builder("messages.stream.connections", connections, AtomicInteger::get)
+      .description("Open message streams")
+      .register(meterRegistry);
+    this.deliveredCounter = Counter.builder("messages.stream.delivered")
+      .description("Messages written to message streams")
+      .register(meterRegistry);
+    this.droppedCounter = Counter.builder("messages.stream.dropped")
+      .description("Message streams closed because their client could not keep up")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Opens a stream of the messages about the user's rentals. Messages the client may have missed
+   * since {@code lastEventId} are replayed first (up to the replay limit; beyond it, or if that
+   * message is unknown, a {@code resync} event is sent instead).
+   *
+   * @param userId      the authenticated user's ID
+   * @param lastEventId ID of the last message the client received, or null for live messages only
+   * @return the emitter streaming the events
+   * @throws ServiceOverloadedException if the maximum number of streams is reached
+   */
+  public SseEmitter subscribe(Long userId, Long lastEventId) {
+    if (connections.incrementAndGet() > maxConnections) {
+      connections.decrementAndGet();
+      throw new ServiceOverloadedException("Too many message streams", RETRY_AFTER_SECONDS);
+    }
+
+    SseEmitter emitter = new SseEmitter(timeoutMillis);
+    Subscriber subscriber = new Subscriber(userId, emitter);
+    emitter.onCompletion(() -> unsubscribe(subscriber));
+    emitter.onTimeout(emitter::complete);
+    emitter.onError(error -> unsubscribe(subscriber));
+
+    // Registered before the replay query, so nothing committed in between is missed; live events
+    // are buffered until the replay has been sent
+    subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+    try {
+      if (lastEventId != null) {
+        replay(subscriber, lastEventId);
+      }
+    } catch (IOException | RuntimeException e) {
+      log.debug("Failed to replay messages for user {}: {}", userId, e.getMessage());
+      close(subscriber);
+      throw e instanceof RuntimeException runtimeException
+        ? runtimeException
+        : new IllegalStateException("Failed to open message stream", e);
+    }
+    subscriber.started = true;
+    scheduleDrain(subscriber);
+    return emitter;
+  }
+
+  /**
+   * Queues a committed message on the streams of its rental's owner. Runs on the thread that
+   * committed it, and never blocks: the owner comes with the event.
+   *
+   * @param event the created message
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onMessageCreated(MessageCreatedEvent event) {
+    Set<Subscriber> ownerSubscribers =
+      event.ownerId() != null ? subscribers.get(event.ownerId()) : null;
+    if (ownerSubscribers == null) {
+      return;
+    }
+
+    MessageItemResponse message = MessageService.toMessageItem(event.message());
+    for (Subscriber subscriber : ownerSubscribers) {
+      if (subscriber.buffer.offer(new StreamEvent(message.id(), message))) {
+        scheduleDrain(subscriber);
+      } else {
+        // Slow consumer: close the stream rather than buffer without limit; the client catches up
+        // through Last-Event-ID when it reconnects
+        droppedCounter.increment();
+        log.debug("Closing message stream of user {}: buffer full", subscriber.userId);
+        close(subscriber);
+      }
+    }
+  }
+
+  /**
+   * Sends a heartbeat comment on every stream. Runs at the configured interval.
+   */
+  @Scheduled(
+    initialDelayString = "${app.messages.stream.heartbeat-ms}",
+    fixedDelayString = "${app.messages.stream.heartbeat-ms}")
+  public void sendHeartbeats() {
+    for (Set<Subscriber> userSubscribers : subscribers.values()) {
+      for (Subscriber subscriber : userSubscribers) {
+        // A full buffer already has data to send
+        if (subscriber.buffer.offer(StreamEvent.HEARTBEAT)) {
+          scheduleDrain(subscriber);
+        }
+      }
+    }
+  }
+
+  /**
+   * Closes every stream (clients reconnect to another instance or after the restart) and stops the
+   * dispatcher threads.
+   */
+  @PreDestroy
+  void shutdown() throws InterruptedException {
+    subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(this::close));
+    dispatcher.shutdown();
+    if (!dispatcher.awaitTermination(10, TimeUnit.SECONDS)) {
+      log.warn("Message stream dispatcher did not stop within 10 seconds");
+    }
+  }
+
+  /**
+   * Sends the messages created since shortly before the client's last event, except that event,
+   * before live delivery starts.
+   */
+  private void replay(Subscriber subscriber, long lastEventId) throws IOException {
+    Optional<LocalDateTime> lastCreatedAt =
+      messageRepository.findInboxCreatedAt(subscriber.userId, lastEventId);
+    List<MessageView> missed = lastCreatedAt.isEmpty() ? List.of()
+      : messageRepository.findInboxSince(subscriber.userId,
+        lastCreatedAt.get().minus(REPLAY_OVERLAP), Limit.of(replayLimit + 2));
+    // The result holds the last event itself
+    if (lastCreatedAt.isEmpty() || missed.size() > replayLimit + 1) {
+      subscriber.emitter.send(SseEmitter.event().name(RESYNC_EVENT).data("{}"));
+      return;
+    }
+
+    Set<Long> replayedIds = new HashSet<>();
+    for (MessageView message : missed) {
+      if (message.id() != lastEventId) {
+        subscriber.emitter.send(toSseEvent(MessageService.toMessageItem(message)));
+        replayedIds.add(message.id());
+      }
+    }
+    subscriber.replayedIds = replayedIds;
+  }
+
+  /**
+   * Hands a stream to a dispatcher thread, unless one is already writing to it or the replay is
+   * still in progress.
+   */
+  private void scheduleDrain(Subscriber subscriber) {
+    if (!subscriber.started || !subscriber.draining.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      dispatcher.execute(() -> drain(subscriber));
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+      subscriber.draining.set(false);
+      close(subscriber);
+    }
+  }
+
+  /**
+   * Writes the buffered events of a stream. Only one thread drains a given stream at a time.
+   */
+  private void drain(Subscriber subscriber) {
+    try {
+      StreamEvent event;
+      while (!subscriber.closed.get() && (event = subscriber.buffer.poll()) != null) {
+        if (event.message() == null) {
+          subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+        } else if (!subscriber.replayedIds.contains(event.id())) {
+          subscriber.emitter.send(toSseEvent(event.message()));
+          deliveredCounter.increment();
+        }
+      }
+    } catch (IOException | IllegalStateException e) {
+      // Client gone, or emitter already completed
+      log.debug("Closing message stream of user {}: {}", subscriber.userId, e.getMessage());
+      close(subscriber);
+    } finally {
+      subscriber.draining.set(false);
+    }
+
+    // An event may have been buffered after the loop ended but before the flag was cleared
+    if (!subscriber.closed.get() && !subscriber.buffer.isEmpty()) {
+      scheduleDrain(subscriber);
+    }
+  }
+
+  private static SseEmitter.SseEventBuilder toSseEvent(MessageItemResponse message) {
+    return SseEmitter.event()
+      .id(String.valueOf(message.id()))
+      .name(MESSAGE_EVENT)
+      .data(message);
+  }
+
+  private void close(Subscriber subscriber) {
+    unsubscribe(subscriber);
+    try {
+      subscriber.emitter.complete();
+    } catch (RuntimeException e) {
+      // Already completed
+    }
+  }
+
+  /**
+   * Forgets a stream. Called for every way a stream ends, possibly several times.
+   */
+  private void unsubscribe(Subscriber subscriber) {
+    if (!subscriber.closed.compareAndSet(false, true)) {
+      return;
+    }
+    connections.decrementAndGet();
+    subscribers.computeIfPresent(subscriber.userId, (id, userSubscribers) -> {
+      userSubscribers.remove(subscriber);
+      return userSubscribers.isEmpty() ? null : userSubscribers;
+    });
+  }
+
+  /**
+   * An event waiting to be written to a stream: a message, or a heartbeat when message is null.
+   */
+  private record StreamEvent(long id, MessageItemResponse message) {
+
+    static final StreamEvent HEARTBEAT = new StreamEvent(0, null);
+  }
+
+  /**
+   * One open stream.
+   */
+  private final class Subscriber {
+
+    private final Long userId;
+    private final SseEmitter emitter;
+    private final ArrayBlockingQueue<StreamEvent> buffer;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * Set once the replay has been sent; live events are only written after that
+     */
+    private volatile boolean started;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * IDs of the replayed messages, which live events must not send again; published to the
+     * dispatcher threads by the write to {@link #started}
+     */
+    private Set<Long> replayedIds = Set.of();
+
+    private Subscriber(Long userId, SseEmitter emitter) {
+      this.userId = userId;
+      this.emitter = emitter;
+      this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+  }
+}
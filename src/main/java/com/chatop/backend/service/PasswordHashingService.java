@@ -0,0 +1,178 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs password hashing and verification on a dedicated, bounded executor.
+ * <p>
+ * BCrypt costs tens of milliseconds of CPU per call by design. Run directly on request threads, a
+ * burst of logins would occupy every worker and delay unrelated requests. Here at most
+ * {@code app.auth.hashing.threads} hashes run at once, a bounded number wait, and further requests
+ * are rejected immediately with {@link ServiceOverloadedException} (503 with {@code Retry-After})
+ * rather than queueing without limit. Requests also give up if their hash has not completed within
+ * the configured timeout.
+ * <p>
+ * Queue depth, active hashes, rejections, and hashing latency (including queue wait) are published
+ * as metrics.
+ */
+@Slf4j
+@Service
+public class PasswordHashingService {
+
+  /**
+   * Delay suggested to rejected clients before retrying
+   */
+  private static final long RETRY_AFTER_SECONDS = 1;
+
+  private final PasswordEncoder passwordEncoder;
+  private final ThreadPoolExecutor executor;
+  private final long timeoutMillis;
+
+  private final Timer encodeTimer;
+  private final Timer matchesTimer;
+  private final Counter rejectedCounter;
+
+  /**
+   * Creates the hashing executor and registers its metrics.
+   *
+   * @param passwordEncoder encoder doing the actual hashing
+   * @param meterRegistry   registry used to publish queue depth, rejections, and latency
+   * @param threads         number of hashes computed in parallel
+   * @param queueCapacity   maximum number of hashes waiting for a thread
+   * @param timeoutMillis   maximum time a request waits for its hash, queueing included
+   */
+  public PasswordHashingService(
+    PasswordEncoder passwordEncoder,
+    MeterRegistry meterRegistry,
+    @Value("${app.auth.hashing.threads}") int threads,
+    @Value("${app.auth.hashing.queue-capacity}") int queueCapacity,
+    @Value("${app.auth.hashing.timeout-ms}") long timeoutMillis) {
+    this.passwordEncoder = passwordEncoder;
+    this.timeoutMillis = timeoutMillis;
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(
+      threads, threads, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(queueCapacity),
+      runnable -> {
+        Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      },
+      // Fail fast: callers turn the rejection into a 503
+      new ThreadPoolExecutor.AbortPolicy());
+
+    Gauge.builder("auth.password.queue.depth", executor, e -> e.getQueue().size())
+      .description("Password hashes waiting for a hashing thread")
+      .register(meterRegistry);
+    Gauge.builder("auth.password.active", executor, ThreadPoolExecutor::getActiveCount)
+      .description("Password hashes currently being computed")
+      .register(meterRegistry);
+    this.encodeTimer = Timer.builder("auth.password.latency")
+      .description("Time to hash or verify a password, queue wait included")
+      .tag("operation", "encode")
+      .publishPercentiles(0.5, 0.99)
+      .register(meterRegistry);
+    this.matchesTimer = Timer.builder("auth.password.latency")
+      .description("Time to hash or verify a password, queue wait included")
+      .tag("operation", "matches")
+      .publishPercentiles(0.5, 0.99)
+      .register(meterRegistry);
+    this.rejectedCounter = Counter.builder("auth.password.rejected")
+      .description("Password operations rejected because the hashing executor was saturated")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Hashes a password.
+   *
+   * @param rawPassword the plain text password
+   * @return the encoded password
+   * @throws ServiceOverloadedException if the hashing executor is saturated
+   */
+  public String encode(String rawPassword) {
+    return run(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+  }
+
+  /**
+   * Verifies a password against its stored hash.
+   *
+   * @param rawPassword     the plain text password
+   * @param encodedPassword the stored encoded password
+   * @return true if the password matches
+   * @throws ServiceOverloadedException if the hashing executor is saturated
+   */
+  public boolean matches(String rawPassword, String encodedPassword) {
+    return run(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+  }
+
+  /**
+   * Indicates whether a stored hash uses an outdated algorithm or cost and should be replaced.
+   * Cheap enough to run on the calling thread.
+   *
+   * @param encodedPassword the stored encoded password
+   * @return true if the password should be hashed again
+   */
+  public boolean upgradeEncoding(String encodedPassword) {
+    return passwordEncoder.upgradeEncoding(encodedPassword);
+  }
+
+  /**
+   * Stops the hashing threads on shutdown.
+   */
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private <T> T run(Timer timer, Callable<T> task) {
+    long start = System.nanoTime();
+    Future<T> future;
+    try {
+      future = executor.submit(task);
+    } catch (RejectedExecutionException e) {
+      rejectedCounter.increment();
+      log.warn("Password hashing executor saturated, rejecting request");
+      throw new ServiceOverloadedException("Too many concurrent authentication requests",
+        RETRY_AFTER_SECONDS);
+    }
+
+    try {
+      return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      rejectedCounter.increment();
+      log.warn("Password hashing did not complete within {} ms", timeoutMillis);
+      throw new ServiceOverloadedException("Authentication timed out", RETRY_AFTER_SECONDS);
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while hashing a password", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("Password hashing failed", e.getCause());
+    } finally {
+      timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.model.RefreshToken;
+import com.chatop.backend.model.RefreshTokenRevocation;
+import com.chatop.backend.model.User;
+import com.chatop.backend.repository.RefreshTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Issues, rotates, and revokes refresh tokens.
+ * <p>
+ * Refresh tokens are random values returned to the client once; only their SHA-256 hash is
+ * stored. Each login starts a token family, and each refresh uses up the presented token and
+ * issues its successor in the same family. A token presented after it was used means two parties
+ * hold it (one of them likely an attacker), so the whole family is revoked and its owner has to
+ * log in again. The reason a token was revoked is stored with it, so a token presented after a
+ * logout is simply rejected rather than reported as a reuse.
+ * <p>
+ * Rejections are returned as empty results rather than thrown, so that a family revocation
+ * commits instead of being rolled back with the transaction.
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+  /**
+   * Number of random bytes in a token value
+   */
+  private static final int TOKEN_BYTES = 32;
+
+  private final RefreshTokenRepository refreshTokenRepository;
+  private final SecureRandom secureRandom = new SecureRandom();
+  private final Counter reuseCounter;
+
+  // Refresh token lifetime in milliseconds, injected from application properties.
+  @Value("${jwt.refresh-expiration}")
+  private long refreshExpiration;
+
+  /**
+   * Creates the service and registers its metrics.
+   *
+   * @param refreshTokenRepository repository storing token hashes
+   * @param meterRegistry          registry used to publish detected token reuses
+   */
+  public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+    MeterRegistry meterRegistry) {
+    this.refreshTokenRepository = refreshTokenRepository;
+    this.reuseCounter = Counter.builder("jwt.refresh.reuse")
+      .description("Used refresh tokens presented again, which revokes their family")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Issues the first refresh token of a new family, after a successful login.
+   *
+   * @param user the authenticated user
+   * @return the token value to hand to the client
+   */
+  @Transactional
+  public String issue(User user) {
+    return issue(user, UUID.randomUUID().toString());
+  }
+
+  /**
+   * Exchanges a refresh token for its successor.
+   *
+   * @param token the refresh token presented by the client
+   * @return the user and the new refresh token, or empty if the token is unknown, expired,
+   * revoked, or already used (in which case its family is revoked)
+   */
+  @Transactional
+  public Optional<RotatedRefreshToken> rotate(String token) {
+    RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(hash(token)).orElse(null);
+    LocalDateTime now = LocalDateTime.now();
+    if (refreshToken == null || !refreshToken.getExpiresAt().isAfter(now)) {
+      return Optional.empty();
+    }
+
+    if (refreshToken.getRevokedAt() != null
+      && refreshToken.getRevokedReason() != RefreshTokenRevocation.USED) {
+      // Logged out, or its family was already revoked: nothing new to report
+      log.debug("Revoked refresh token {} presented ({})", refreshToken.getId(),
+        refreshToken.getRevokedReason());
+      return Optional.empty();
+    }
+
+    // Losing the race to mark it used also means the token was presented twice
+    if (refreshToken.getRevokedAt() != null
+      || refreshTokenRepository.markUsed(refreshToken.getId(), now) == 0) {
+      int revoked = refreshTokenRepository.revokeFamily(refreshToken.getFamilyId(), now,
+        RefreshTokenRevocation.REUSE_DETECTED);
+      reuseCounter.increment();
+      log.warn("Reuse of refresh token {} of user {}: revoked {} tokens of its family",
+        refreshToken.getId(), refreshToken.getUser().getId(), revoked);
+      return Optional.empty();
+    }
+
+    User user = refreshToken.getUser();
+    return Optional.of(new RotatedRefreshToken(user, issue(user, refreshToken.getFamilyId())));
+  }
+
+  /**
+   * Revokes the family of a refresh token (logout). Unknown tokens are ignored.
+   *
+   * @param token the refresh token presented by the client
+   */
+  @Transactional
+  public void revoke(String token) {
+    refreshTokenRepository.findByTokenHash(hash(token)).ifPresent(refreshToken ->
+      refreshTokenRepository.revokeFamily(refreshToken.getFamilyId(), LocalDateTime.now(),
+        RefreshTokenRevocation.LOGGED_OUT));
+  }
+
+  /**
+   * Deletes expired tokens. Runs at the configured interval.
+   */
+  @Scheduled(
+    initialDelayString = "${jwt.refresh-cleanup-interval-ms}",
+    fixedDelayString = "${jwt.refresh-cleanup-interval-ms}")
+  public void deleteExpiredTokens() {
+    int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+    if (deleted > 0) {
+      log.info("Deleted {} expired refresh tokens", deleted);
+    }
+  }
+
+  private String issue(User user, String familyId) {
+    byte[] bytes = new byte[TOKEN_BYTES];
+    secureRandom.nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+    RefreshToken refreshToken = new RefreshToken();
+    refreshToken.setUser(user);
+    refreshToken.setTokenHash(hash(token));
+    refreshToken.setFamilyId(familyId);
+    refreshToken.setExpiresAt(LocalDateTime.now().plus(refreshExpiration, ChronoUnit.MILLIS));
+    refreshTokenRepository.save(refreshToken);
+    return token;
+  }
+
+  /**
+   * Hashes a token value for storage and lookup. Tokens are long random values, so a plain
+   * SHA-256 is enough (no salt or slow hash needed).
+   */
+  private static String hash(String token) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
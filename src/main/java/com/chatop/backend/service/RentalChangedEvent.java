@@ -0,0 +1,11 @@
+package com.chatop.backend.service;
+
+/**
+ * Published by {@link RentalService} whenever a rental is created or modified. Listeners that keep
+ * derived copies of rental data (caches, indexes) refresh them once the change has committed.
+ *
+ * @param rentalId ID of the created or modified rental
+ */
+public record RentalChangedEvent(Long rentalId) {
+
+}
@@ -0,0 +1,165 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.cache.BoundedTtlCache;
+import com.chatop.backend.storage.LocalRentalImageStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Resolves image requests against the local image store for
+ * {@link com.chatop.backend.controller.RentalImageController}.
+ * <p>
+ * File metadata (size, modification time, and a precomputed strong ETag) is cached so repeated
+ * requests skip the file system lookup, and the content of small files is cached in memory so hot
+ * thumbnails are written straight from the heap. Larger files are left to the servlet container's
+ * zero-copy sendfile support.
+ */
+@Service
+@ConditionalOnExpression(
+  "'${app.upload.store:local}' == 'local' and '${app.upload.serving.mode:direct}' == 'direct'")
+public class RentalImageFileService {
+
+  /**
+   * Maximum number of files whose metadata is cached
+   */
+  private static final int METADATA_CACHE_SIZE = 10_000;
+
+  /**
+   * Lifetime of cached metadata; bounds how long a deleted file may still be announced
+   */
+  private static final Duration METADATA_TTL = Duration.ofSeconds(60);
+
+  /**
+   * Content-addressed keys: ab/cd/{sha256}{suffix}.{ext}, where the shard directories repeat the
+   * start of the hash
+   */
+  private static final Pattern CONTENT_ADDRESSED_KEY =
+    Pattern.compile("([0-9a-f]{2})/([0-9a-f]{2})/\\1\\2[0-9a-f]{60}[^/]*");
+
+  /**
+   * Maps file extensions to MIME types
+   */
+  private static final Map<String, String> CONTENT_TYPES = Map.of(
+    "jpg", "image/jpeg",
+    "png", "image/png",
+    "webp", "image/webp"
+  );
+
+  private final LocalRentalImageStore localRentalImageStore;
+  private final BoundedTtlCache<String, ServedImage> metadataCache;
+  private final BoundedTtlCache<Path, byte[]> contentCache;
+  private final long maxCachedFileSize;
+
+  /**
+   * Creates the service and its caches, and registers cache metrics.
+   *
+   * @param localRentalImageStore store holding the image files
+   * @param memoryMaxEntries      maximum number of small files kept in memory
+   * @param memoryMaxFileSize     largest file kept in memory
+   * @param meterRegistry         registry used to publish cache statistics
+   */
+  public RentalImageFileService(
+    LocalRentalImageStore localRentalImageStore,
+    @Value("${app.upload.serving.memory-max-entries}") int memoryMaxEntries,
+    @Value("${app.upload.serving.memory-max-file-size}") DataSize memoryMaxFileSize,
+    MeterRegistry meterRegistry) {
+    this.localRentalImageStore = localRentalImageStore;
+    this.metadataCache = new BoundedTtlCache<>(METADATA_CACHE_SIZE, METADATA_TTL);
+    this.metadataCache.bindMetrics(meterRegistry, "rental.images.metadata");
+    this.contentCache = new BoundedTtlCache<>(Math.max(1, memoryMaxEntries), METADATA_TTL);
+    this.contentCache.bindMetrics(meterRegistry, "rental.images.content");
+    this.maxCachedFileSize = memoryMaxEntries > 0 ? memoryMaxFileSize.toBytes() : -1;
+  }
+
+  /**
+   * Looks up a stored image.
+   *
+   * @param key the image key (path below the upload URL)
+   * @return the image metadata, or empty if no such file exists
+   */
+  public Optional<ServedImage> find(String key) {
+    if (!CONTENT_TYPES.containsKey(extensionOf(key))) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(metadataCache.getOrLoad(key, this::load));
+  }
+
+  /**
+   * Returns the content of a small file from memory, reading and caching it on a miss.
+   *
+   * @param image the image to read
+   * @return the file content, or null if the file is too large to be kept in memory
+   * @throws IOException if the file cannot be read
+   */
+  public byte[] cachedContent(ServedImage image) throws IOException {
+    if (image.length() > maxCachedFileSize) {
+      return null;
+    }
+    byte[] content = contentCache.get(image.path());
+    if (content == null) {
+      content = Files.readAllBytes(image.path());
+      contentCache.put(image.path(), content);
+    }
+    return content;
+  }
+
+  /**
+   * Forgets a file that turned out to be missing when it was read.
+   *
+   * @param key the image key
+   */
+  public void evict(String key) {
+    metadataCache.invalidate(key);
+  }
+
+  private ServedImage load(String key) {
+    Path path;
+    try {
+      path = localRentalImageStore.resolve(key);
+    } catch (IllegalArgumentException e) {
+      // Key escaping the upload directory
+      return null;
+    }
+
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      if (!attributes.isRegularFile()) {
+        return null;
+      }
+
+      long lastModified = attributes.lastModifiedTime().toMillis();
+      boolean immutable = CONTENT_ADDRESSED_KEY.matcher(key).matches();
+      String filename = path.getFileName().toString();
+      // Content-addressed names identify the bytes; other files are identified by size and time
+      String etag = immutable
+        ? "\"" + filename.substring(0, filename.lastIndexOf('.')) + "\""
+        : "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+
+      return new ServedImage(path, attributes.size(), lastModified, etag,
+        CONTENT_TYPES.get(extensionOf(key)), immutable, true);
+
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read image " + key, e);
+    }
+  }
+
+  private static String extensionOf(String key) {
+    int dot = key.lastIndexOf('.');
+    return dot < 0 ? "" : key.substring(dot + 1).toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,261 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.repository.RentalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Background stage of the rental image upload pipeline. Request threads only spool uploads to disk
+ * and validate their headers (see {@link RentalImageStorageService#spoolRentalImage}); once the
+ * rental transaction commits, the spooled image is handed to a bounded executor that stores it
+ * with its resized variants, then fills in the rental's picture URL in a separate short
+ * transaction.
+ * <p>
+ * When the queue is full, the submitting thread processes the image itself, which slows down
+ * uploaders instead of growing memory (backpressure). Images submitted after the executor has
+ * shut down are processed on the submitting thread as well, so no spooled image is dropped. Queue
+ * depth and outcome counters are published as metrics.
+ * <p>
+ * The hand-off is at most once: it only lives in memory, so if the process dies after the rental
+ * commits but before its image is stored, the rental is left without a picture and the spooled
+ * file is removed by the sweeper.
+ */
+@Slf4j
+@Service
+public class RentalImagePipeline {
+
+  private final RentalImageStorageService rentalImageStorageService;
+  private final RentalRepository rentalRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final ApplicationEventPublisher eventPublisher;
+  private final boolean enabled;
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * Latest upload sequence number per rental, so that an older image never overwrites a newer one,
+   * whichever commits or finishes last. Sequence numbers are taken before commit, so the highest
+   * one is kept, and entries are only pruned once no older upload is still pending
+   */
+  private final Map<Long, Long> latestUploads = new ConcurrentHashMap<>();
+
+  /**
+   * Sequence numbers of the uploads not committed, rolled back or processed yet, guarded by
+   * uploadsLock along with the last sequence number
+   */
+  private final NavigableSet<Long> pendingUploads = new TreeSet<>();
+  private final ReentrantLock uploadsLock = new ReentrantLock();
+  private long uploadSequence;
+
+  private final Counter processedCounter;
+  private final Counter failedCounter;
+
+  /**
+   * Creates the pipeline and its bounded executor, and registers its metrics.
+   *
+   * @param rentalImageStorageService service validating and storing spooled images
+   * @param rentalRepository          repository used to record picture URLs
+   * @param transactionManager        transaction manager for the picture update transactions
+   * @param eventPublisher            publisher notifying caches of picture changes
+   * @param meterRegistry             registry used to publish queue depth and outcome counts
+   * @param enabled                   whether uploads are processed asynchronously at all
+   * @param threads                   number of image processing threads
+   * @param queueCapacity             maximum number of images waiting for a thread
+   */
+  public RentalImagePipeline(
+    RentalImageStorageService rentalImageStorageService,
+    RentalRepository rentalRepository,
+    PlatformTransactionManager transactionManager,
+    ApplicationEventPublisher eventPublisher,
+    MeterRegistry meterRegistry,
+    @Value("${app.upload.async.enabled}") boolean enabled,
+    @Value("${app.upload.async.threads}") int threads,
+    @Value("${app.upload.async.queue-capacity}") int queueCapacity) {
+    this.rentalImageStorageService = rentalImageStorageService;
+    this.rentalRepository = rentalRepository;
+    this.eventPublisher = eventPublisher;
+    this.enabled = enabled;
+
+    // Picture updates may be triggered from a transaction completion callback, so they must not
+    // join the (already finished) request transaction
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(
+      threads, threads, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(queueCapacity),
+      runnable -> {
+        Thread thread = new Thread(runnable, "rental-image-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      },
+      this::rejected);
+
+    Gauge.builder("rental.images.queue.depth", executor, e -> e.getQueue().size())
+      .description("Spooled rental images waiting to be processed")
+      .register(meterRegistry);
+    Gauge.builder("rental.images.active", executor, ThreadPoolExecutor::getActiveCount)
+      .description("Rental images currently being processed")
+      .register(meterRegistry);
+    this.processedCounter = Counter.builder("rental.images.processed")
+      .description("Rental images stored successfully")
+      .register(meterRegistry);
+    this.failedCounter = Counter.builder("rental.images.failed")
+      .description("Rental images rejected or failed during processing")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Indicates whether uploads should go through the asynchronous pipeline.
+   *
+   * @return true if asynchronous processing is enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Schedules a spooled image for processing once the current transaction commits (immediately if
+   * no transaction is active). If the transaction rolls back, the spooled image is discarded.
+   *
+   * @param rentalId the rental the image belongs to
+   * @param image    the spooled image
+   */
+  public void submitAfterCommit(Long rentalId, SpooledImage image) {
+    long sequence;
+    uploadsLock.lock();
+    try {
+      sequence = ++uploadSequence;
+      pendingUploads.add(sequence);
+    } finally {
+      uploadsLock.unlock();
+    }
+
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      submit(rentalId, image, sequence);
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        if (status == STATUS_COMMITTED) {
+          submit(rentalId, image, sequence);
+        } else {
+          rentalImageStorageService.discardSpooledImage(image);
+          completed(sequence);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the number of images waiting for a processing thread.
+   *
+   * @return the current queue depth
+   */
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Stops accepting new images and lets queued ones finish on shutdown.
+   */
+  @PreDestroy
+  void shutdown() throws InterruptedException {
+    executor.shutdown();
+    if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+      log.warn("Rental image pipeline did not drain within 30 seconds");
+    }
+  }
+
+  /**
+   * Runs an image the executor did not accept on the submitting thread: as backpressure when the
+   * queue is full, and so that the image is still stored when the executor has shut down (unlike
+   * {@link ThreadPoolExecutor.CallerRunsPolicy}, which silently drops tasks after shutdown).
+   */
+  private void rejected(Runnable task, ThreadPoolExecutor executor) {
+    if (executor.isShutdown()) {
+      log.warn("Rental image pipeline is shut down, processing image on the submitting thread");
+    }
+    task.run();
+  }
+
+  /**
+   * Records the upload as the latest for its rental and hands it to the executor.
+   */
+  private void submit(Long rentalId, SpooledImage image, long sequence) {
+    latestUploads.merge(rentalId, sequence, Math::max);
+    executor.execute(() -> process(rentalId, image, sequence));
+  }
+
+  /**
+   * Validates and stores a spooled image, then records its URL on the rental unless a newer upload
+   * for the same rental has been submitted in the meantime.
+   */
+  private void process(Long rentalId, SpooledImage image, long sequence) {
+    if (!isLatest(rentalId, sequence)) {
+      // Superseded before it was even started
+      rentalImageStorageService.discardSpooledImage(image);
+      completed(sequence);
+      return;
+    }
+
+    try {
+      StoredPicture picture = rentalImageStorageService.storeSpooledImage(image, rentalId);
+
+      if (isLatest(rentalId, sequence)) {
+        transactionTemplate.executeWithoutResult(status -> rentalRepository.updatePicture(
+          rentalId, picture.url(), picture.variantWidths(), LocalDateTime.now()));
+        eventPublisher.publishEvent(new RentalChangedEvent(rentalId));
+      }
+      processedCounter.increment();
+
+    } catch (RuntimeException e) {
+      failedCounter.increment();
+      log.warn("Rental image for rental {} was not stored: {}", rentalId, e.getMessage());
+    } finally {
+      completed(sequence);
+    }
+  }
+
+  private boolean isLatest(Long rentalId, long sequence) {
+    Long latest = latestUploads.get(rentalId);
+    return latest != null && sequence >= latest;
+  }
+
+  /**
+   * Forgets a finished upload, and the latest uploads no pending upload can be older than.
+   */
+  private void completed(long sequence) {
+    uploadsLock.lock();
+    try {
+      pendingUploads.remove(sequence);
+      long oldestPending = pendingUploads.isEmpty() ? uploadSequence + 1 : pendingUploads.first();
+      latestUploads.values().removeIf(latest -> latest < oldestPending);
+    } finally {
+      uploadsLock.unlock();
+    }
+  }
+}
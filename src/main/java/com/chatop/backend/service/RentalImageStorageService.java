@@ -1,16 +1,22 @@
 package com.chatop.backend.service;
 
+import com.chatop.backend.storage.RentalImageStore;
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.imageio.ImageIO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tika.Tika;
@@ -21,8 +27,23 @@ import org.springframework.web.multipart.MultipartFile;
 
 /**
  * Handles upload, validation, and storage of rental property images. Validates images by size, MIME
- * type (using Tika), and integrity (using ImageIO). Stores files locally with generated filenames:
- * rental_{rental_id}_{timestamp}_{extension}
+ * type (using Tika), and integrity and dimensions (using {@link RentalImageValidator}). Stores
+ * files in the configured {@link RentalImageStore} (local directory or S3-compatible bucket), named
+ * in one of two ways:
+ * <ul>
+ *   <li>{@code content} (default): content-addressed, as
+ *   {hash[0..2]}/{hash[2..4]}/{hash}{extension} where hash is the SHA-256 of the file, computed
+ *   while it is spooled. Identical uploads share a single file, and since a name always denotes
+ *   the same bytes, these URLs can be cached forever. Files no longer referenced by any rental are
+ *   removed by {@link RentalImageSweeper}.</li>
+ *   <li>{@code rental}: rental_{rental_id}_{timestamp}{extension}</li>
+ * </ul>
+ * <p>
+ * Uploads can either be saved in one synchronous step ({@link #saveRentalImage}) or in two stages
+ * for the asynchronous pipeline: a spool to disk and header validation on the request thread
+ * ({@link #spoolRentalImage}), so invalid uploads are still rejected with 400, then decoding and
+ * the transfer to the store on a background thread ({@link #storeSpooledImage}). Either way,
+ * resized variants are generated alongside the original.
  */
 @Service
 @Slf4j
@@ -47,10 +68,24 @@ public class RentalImageStorageService {
     "image/webp", ".webp"
   );
 
+  /**
+   * Number of leading bytes inspected for MIME type detection (covers the JPEG, PNG, and WebP
+   * signatures with ample margin)
+   */
+  private static final int SNIFF_BYTES = 4096;
+
+  /**
+   * Naming mode storing each distinct image once, under its SHA-256 hash
+   */
+  private static final String NAMING_CONTENT = "content";
+
   private final Tika tika;
 
-  @Value("${app.upload.dir}")
-  private String uploadDir;
+  private final RentalImageValidator rentalImageValidator;
+
+  private final RentalImageVariants rentalImageVariants;
+
+  private final RentalImageStore rentalImageStore;
 
   @Value("${app.upload.url}")
   private String uploadUrl;
@@ -58,78 +93,241 @@ public class RentalImageStorageService {
   @Value("${app.upload.max-size}")
   private DataSize maxFileSize;
 
-  private Path uploadRootPath;
+  @Value("${app.upload.spool-dir}")
+  private String spoolDir;
+
+  // Naming mode ("content" or "rental"), injected from application properties.
+  @Value("${app.upload.naming}")
+  private String naming;
+
+  private Path spoolRootPath;
 
   /**
-   * Initializes the upload directory on application startup. Creates the directory if it doesn't
+   * Initializes the spool directory on application startup. Creates the directory if it doesn't
    * exist.
    */
   @PostConstruct
-  void initializeUploadPath() {
+  void initializeSpoolPath() {
     try {
-      uploadRootPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-      Files.createDirectories(uploadRootPath);
+      spoolRootPath = Paths.get(spoolDir).toAbsolutePath().normalize();
+      Files.createDirectories(spoolRootPath);
     } catch (IOException e) {
       // Log and rethrow as unchecked exception to fail startup
-      log.error("Failed to initialize upload directory: {}", uploadDir, e);
+      log.error("Failed to initialize spool directory: {}", spoolDir, e);
       throw new IllegalStateException(
-        "Could not initialize upload directory: " + uploadRootPath, e);
+        "Could not initialize spool directory: " + spoolRootPath, e);
     }
   }
 
   /**
-   * Validates and saves a rental image to local storage. Performs multi-layered validation: empty
+   * Validates and saves a rental image to the image store. Performs multi-layered validation: empty
    * check, size limit, MIME type detection, and image integrity verification. Returns the URL path
-   * for accessing the saved image.
+   * for accessing the saved image and the widths of its stored variants.
+   * <p>
+   * The upload is streamed to the spool directory, validated there, and handed to the store from
+   * disk, so the file content is never held on the heap.
+   */
+  public StoredPicture saveRentalImage(MultipartFile file, Long rentalId) {
+    return storeSpooledImage(spoolRentalImage(file), rentalId);
+  }
+
+  /**
+   * Copies an uploaded image to the spool directory and runs the cheap checks: presence, size, MIME
+   * type (sniffed by Tika from a small prefix of the upload, before anything is copied), and
+   * integrity and dimensions from the image header (see {@link RentalImageValidator#validate}).
+   * The image is not decoded.
+   *
+   * @param file the uploaded file
+   * @return the spooled image, to be passed to {@link #storeSpooledImage}
+   * @throws IllegalArgumentException if the file is empty, too large, of an unsupported type,
+   *                                  truncated, corrupted, or its dimensions are too large
    */
-  public String saveRentalImage(MultipartFile file, Long rentalId) {
+  public SpooledImage spoolRentalImage(MultipartFile file) {
+    // Validate file presence
+    if (file == null || file.isEmpty()) {
+      throw new IllegalArgumentException("File is empty");
+    }
+
+    // Validate file size
+    if (file.getSize() > maxFileSize.toBytes()) {
+      throw new IllegalArgumentException("File exceeds maximum allowed size");
+    }
+
+    Path spooled = null;
     try {
-      // Validate file presence
-      if (file == null || file.isEmpty()) {
-        throw new IllegalArgumentException("File is empty");
+      // Detect actual MIME type by content inspection of the first bytes only
+      byte[] prefix;
+      try (InputStream inputStream = file.getInputStream()) {
+        prefix = inputStream.readNBytes(SNIFF_BYTES);
+      }
+      String mimeType = tika.detect(prefix);
+      if (!ALLOWED_MIME.contains(mimeType)) {
+        throw new IllegalArgumentException("Unsupported file type: " + mimeType);
       }
 
-      // Validate file size
-      if (file.getSize() > maxFileSize.toBytes()) {
-        throw new IllegalArgumentException("File exceeds maximum allowed size");
+      spooled = Files.createTempFile(spoolRootPath, "upload_", ".tmp");
+      String contentHash = null;
+      if (isContentAddressed()) {
+        // Stream-copy the upload, hashing it on the way through
+        contentHash = copyAndHash(file, spooled);
+      } else {
+        // Move the upload if it is already on disk, or stream-copy it, without buffering it on the
+        // heap (the File overload lets the container rename its own temporary file)
+        file.transferTo(spooled.toFile());
       }
 
-      // Read bytes once for reuse
-      byte[] fileBytes = file.getBytes();
+      // Header-only checks (truncation, corruption, dimensions), before the upload is accepted
+      rentalImageValidator.validate(spooled, mimeType);
 
-      // Detect actual MIME type by content inspection
-      String mimeType = tika.detect(fileBytes);
+      return new SpooledImage(spooled, mimeType, Files.size(spooled), contentHash);
 
-      if (!ALLOWED_MIME.contains(mimeType)) {
-        throw new IllegalArgumentException("Unsupported file type: " + mimeType);
-      }
+    } catch (IOException e) {
+      discardSpooledFile(spooled);
+      log.error("Failed to spool rental image: {}", e.getMessage(), e);
+      throw new IllegalStateException("Failed to spool rental image", e);
+    } catch (RuntimeException e) {
+      discardSpooledFile(spooled);
+      throw e;
+    }
+  }
 
-      // Verify image integrity (catches corrupted files)
-      try (InputStream inputStream = file.getInputStream()) {
-        if (ImageIO.read(inputStream) == null) {
-          throw new IllegalArgumentException("Invalid or corrupted image file");
-        }
+  /**
+   * Fully decodes a spooled image in decode validation mode, writes its resized variants (see
+   * {@link RentalImageVariants}), and puts everything in the image store. The spooled file is
+   * removed whether or not the image is valid.
+   *
+   * @param image    the spooled image
+   * @param rentalId the rental the image belongs to (used in the filename; may be null when images
+   *                 are content-addressed)
+   * @return the URL path for accessing the saved image, and the widths of its stored variants
+   * @throws IllegalArgumentException if the image data is corrupted
+   */
+  public StoredPicture storeSpooledImage(SpooledImage image, Long rentalId) {
+    try {
+      // Header already validated when spooled; decode mode also checks the compressed data
+      rentalImageValidator.validateDecodes(image.path());
+
+      String extension = EXTENSION_MAP.get(image.mimeType());
+      // Key of the stored image, i.e. its path relative to the upload URL
+      String key;
+      if (image.contentHash() != null) {
+        // Content-addressed: ab/cd/abcd....ext
+        key = image.contentHash().substring(0, 2) + "/"
+          + image.contentHash().substring(2, 4) + "/" + image.contentHash() + extension;
+      } else {
+        // Generate unique filename with rental ID and timestamp
+        key = "rental_" + rentalId + "_" + Instant.now().toEpochMilli() + extension;
       }
 
-      // Generate unique filename with rental ID and timestamp
-      String filename =
-        "rental_" + rentalId + "_" + Instant.now().toEpochMilli() + EXTENSION_MAP.get(mimeType);
+      List<Integer> variantWidths;
+      if (image.contentHash() != null && rentalImageStore.touchIfExists(key)) {
+        // Same content already stored: reuse it. Touching it restarts the orphan sweeper's grace
+        // period for the new reference. Its variants were generated with the widths configured
+        // at the time, so only those still present are recorded
+        variantWidths = new ArrayList<>();
+        for (int width : rentalImageVariants.getWidths()) {
+          if (rentalImageStore.touchIfExists(RentalImageVariants.variantFilename(key, width))) {
+            variantWidths.add(width);
+          }
+        }
+        log.info("Reused stored rental image: {} ({})", key, image.mimeType());
+      } else {
+        // Store resized copies first, so an existing original always has its variants
+        Map<String, Path> variants =
+          rentalImageVariants.generate(image.path(), spoolRootPath, key);
+        try {
+          for (Map.Entry<String, Path> variant : variants.entrySet()) {
+            rentalImageStore.put(variant.getKey(), variant.getValue(), "image/jpeg");
+          }
+        } finally {
+          variants.values().forEach(this::discardSpooledFile);
+        }
 
-      // Save file to disk
-      Path targetLocation = uploadRootPath.resolve(filename).normalize();
-      Files.write(targetLocation, fileBytes, StandardOpenOption.CREATE,
-        StandardOpenOption.TRUNCATE_EXISTING);
+        rentalImageStore.put(key, image.path(), image.mimeType());
+        variantWidths = rentalImageVariants.getWidths();
 
-      // Log successful upload with file details
-      log.info("Saved rental image: {} ({} bytes, {})", filename, fileBytes.length, mimeType);
+        log.info("Saved rental image: {} ({} bytes, {})", key, image.size(), image.mimeType());
+      }
 
       // Return URL path, handling trailing slash
-      return (uploadUrl.endsWith("/") ? uploadUrl : uploadUrl + "/") + filename;
+      return new StoredPicture(urlFor(key), RentalImageVariants.joinWidths(variantWidths));
 
     } catch (IOException e) {
-      // Log and rethrow as unchecked exception
       log.error("Failed to save rental image for rental {}: {}", rentalId, e.getMessage(), e);
       throw new IllegalStateException("Failed to save rental image", e);
+    } finally {
+      discardSpooledFile(image.path());
+    }
+  }
+
+  /**
+   * Deletes a spooled image that will not be stored (e.g. when the rental transaction rolled back).
+   *
+   * @param image the spooled image
+   */
+  public void discardSpooledImage(SpooledImage image) {
+    discardSpooledFile(image.path());
+  }
+
+  /**
+   * Indicates whether images are stored under their content hash.
+   *
+   * @return true in content-addressed naming mode
+   */
+  public boolean isContentAddressed() {
+    return NAMING_CONTENT.equalsIgnoreCase(naming);
+  }
+
+  /**
+   * Returns the absolute spool directory.
+   *
+   * @return the spool root path
+   */
+  public Path getSpoolRootPath() {
+    return spoolRootPath;
+  }
+
+  /**
+   * Returns the URL path of a stored file.
+   *
+   * @param key the file's key in the image store
+   * @return the URL path for accessing the file
+   */
+  public String urlFor(String key) {
+    return (uploadUrl.endsWith("/") ? uploadUrl : uploadUrl + "/") + key;
+  }
+
+  /**
+   * Copies an upload to a file while computing its SHA-256 digest, using a fixed-size buffer.
+   *
+   * @return the lowercase hex digest of the content
+   */
+  private static String copyAndHash(MultipartFile file, Path target) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is mandatory on every Java platform
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+
+    try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+      Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Deletes a spool file if it still exists, logging rather than failing on errors.
+   */
+  private void discardSpooledFile(Path spooled) {
+    if (spooled == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(spooled);
+    } catch (IOException e) {
+      log.warn("Failed to delete spooled image {}: {}", spooled, e.getMessage());
     }
   }
 }
@@ -0,0 +1,196 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.repository.RentalRepository;
+import com.chatop.backend.storage.RentalImageStore;
+import com.chatop.backend.storage.StoredImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically deletes rental images that no rental references anymore (replaced pictures, deleted
+ * rentals), together with their resized variants, as well as spool and temporary files left behind
+ * by interrupted uploads and old format-converted copies.
+ * <p>
+ * Reference counts are derived from the rentals table on every sweep rather than stored, so they
+ * cannot drift. A file is only deleted once it is older than the grace period: an image is written
+ * before the rental pointing to it commits, and reusing a stored image refreshes its timestamp.
+ * Since a reuse may happen after the listing, the timestamp is checked again by the store at the
+ * moment of deletion (see {@link RentalImageStore#deleteIfModifiedBefore}).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RentalImageSweeper {
+
+  private final RentalImageStorageService rentalImageStorageService;
+
+  private final RentalImageStore rentalImageStore;
+
+  private final RentalRepository rentalRepository;
+
+  // Only present when local images are served by the application
+  private final ObjectProvider<RentalImageTranscoder> rentalImageTranscoderProvider;
+
+  // Whether orphaned images are deleted, injected from application properties.
+  @Value("${app.upload.sweeper.enabled}")
+  private boolean enabled;
+
+  // Minimum age in seconds before an unreferenced file is deleted, injected from application
+  // properties.
+  @Value("${app.upload.sweeper.grace-seconds}")
+  private long graceSeconds;
+
+  /**
+   * Deletes unreferenced images older than the grace period. Runs at the configured interval.
+   */
+  @Scheduled(
+    initialDelayString = "${app.upload.sweeper.interval-ms}",
+    fixedDelayString = "${app.upload.sweeper.interval-ms}")
+  public void sweep() {
+    if (!enabled) {
+      return;
+    }
+
+    Instant cutoff = Instant.now().minusSeconds(graceSeconds);
+    try {
+      int deleted = sweepUploads(cutoff) + sweepStaleFiles(
+        rentalImageStorageService.getSpoolRootPath(), cutoff);
+      RentalImageTranscoder transcoder = rentalImageTranscoderProvider.getIfAvailable();
+      if (transcoder != null) {
+        // Converted copies are re-encoded on demand, so old ones can always go
+        deleted += sweepStaleFiles(transcoder.getNegotiatedRootPath(), cutoff);
+      }
+      if (deleted > 0) {
+        log.info("Image sweeper deleted {} orphaned files", deleted);
+      }
+    } catch (IOException e) {
+      log.warn("Image sweep failed: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Deletes unreferenced originals with their variants, variants whose original is gone, and
+   * leftover temporary files from the image store.
+   *
+   * @return the number of deleted files
+   */
+  private int sweepUploads(Instant cutoff) throws IOException {
+    List<StoredImage> originals = new ArrayList<>();
+    // Variants grouped by the key their original would have, without extension
+    Map<String, List<StoredImage>> variantsByStem = new HashMap<>();
+    List<StoredImage> temporaryFiles = new ArrayList<>();
+
+    for (StoredImage image : rentalImageStore.list()) {
+      String originalStem = RentalImageVariants.originalStemOf(image.key());
+      if (image.key().endsWith(".tmp")) {
+        temporaryFiles.add(image);
+      } else if (originalStem != null) {
+        variantsByStem.computeIfAbsent(originalStem, stem -> new ArrayList<>()).add(image);
+      } else {
+        originals.add(image);
+      }
+    }
+
+    // Loaded after listing, so a picture stored during the listing is either referenced here or
+    // still within its grace period
+    Set<String> referenced = rentalRepository.findReferencedPictures();
+    int deleted = 0;
+
+    for (StoredImage original : originals) {
+      List<StoredImage> variants = variantsByStem.remove(stemOf(original.key()));
+      String url = rentalImageStorageService.urlFor(original.key());
+
+      if (referenced.contains(url) || !original.lastModified().isBefore(cutoff)
+        // Final check against the live reference count, in case a rental picked it up meanwhile
+        || rentalRepository.countByPicture(url) > 0) {
+        continue;
+      }
+
+      if (delete(original.key(), cutoff) == 0) {
+        // Reused since it was listed: the pending rental needs its variants too
+        continue;
+      }
+      deleted++;
+      if (variants != null) {
+        for (StoredImage variant : variants) {
+          deleted += delete(variant.key(), cutoff);
+        }
+      }
+      log.debug("Deleted orphaned rental image {}", url);
+    }
+
+    // Remaining variants have no original (e.g. the upload failed after they were stored)
+    for (List<StoredImage> variants : variantsByStem.values()) {
+      for (StoredImage variant : variants) {
+        if (variant.lastModified().isBefore(cutoff)) {
+          deleted += delete(variant.key(), cutoff);
+        }
+      }
+    }
+    for (StoredImage temporaryFile : temporaryFiles) {
+      if (temporaryFile.lastModified().isBefore(cutoff)) {
+        deleted += delete(temporaryFile.key(), cutoff);
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * Deletes files older than the cutoff from a directory (used for the spool directory and the
+   * converted image copies).
+   *
+   * @return the number of deleted files
+   */
+  private int sweepStaleFiles(Path directory, Instant cutoff) throws IOException {
+    int deleted = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : files.filter(Files::isRegularFile).toList()) {
+        try {
+          if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)
+            && Files.deleteIfExists(file)) {
+            deleted++;
+          }
+        } catch (IOException e) {
+          // Vanished or locked: leave it for the next sweep
+          log.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+      }
+    }
+    return deleted;
+  }
+
+  private static String stemOf(String key) {
+    int slash = key.lastIndexOf('/');
+    int dot = key.lastIndexOf('.');
+    return dot > slash ? key.substring(0, dot) : key;
+  }
+
+  /**
+   * Deletes a stored file unless it was modified at or after the cutoff (re-checked by the store
+   * right before deleting), logging rather than failing on errors.
+   *
+   * @return 1 if the file was deleted, 0 otherwise
+   */
+  private int delete(String key, Instant cutoff) {
+    try {
+      return rentalImageStore.deleteIfModifiedBefore(key, cutoff) ? 1 : 0;
+    } catch (IOException e) {
+      log.warn("Failed to delete {}: {}", key, e.getMessage());
+      return 0;
+    }
+  }
+}
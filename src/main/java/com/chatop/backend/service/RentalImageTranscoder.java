@@ -0,0 +1,333 @@
+package com.chatop.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * Picks the representation of a rental image to send according to the request's {@code Accept}
+ * header, converting the stored file when needed.
+ * <ul>
+ *   <li>Clients that list {@code image/webp} get a WebP copy of JPEG and PNG images, encoded with
+ *   libwebp through the webp-imageio plugin.</li>
+ *   <li>WebP images are converted to JPEG for clients that do not list {@code image/webp};
+ *   wildcards are not trusted, as older browsers send them without supporting WebP.</li>
+ *   <li>Otherwise, and for requests without an {@code Accept} header, the stored file is sent.</li>
+ * </ul>
+ * Converted copies are encoded on first request and kept on disk, named after the original and
+ * its ETag so a changed original never reuses a stale copy. Concurrent requests for the same
+ * missing copy wait for a single encoding instead of each running their own.
+ * <p>
+ * An encoding decodes the whole image (up to the maximum pixel count accepted at upload, about
+ * 160 MB of bitmap), so the number of encodings running at once is bounded. When all permits are
+ * taken, the original is sent instead of waiting or allocating another bitmap, with caching
+ * disabled so neither the client nor a shared cache keeps it in place of the converted copy.
+ */
+@Slf4j
+@Service
+@ConditionalOnExpression(
+  "'${app.upload.store:local}' == 'local' and '${app.upload.serving.mode:direct}' == 'direct'")
+public class RentalImageTranscoder {
+
+  private static final String WEBP_TYPE = "image/webp";
+  private static final String JPEG_TYPE = "image/jpeg";
+
+  /**
+   * Maps the MIME types copies can be converted to to their file extensions
+   */
+  private static final Map<String, String> EXTENSIONS = Map.of(
+    WEBP_TYPE, ".webp",
+    JPEG_TYPE, ".jpg"
+  );
+
+  private final RentalImageVariants rentalImageVariants;
+  private final Counter transcodedCounter;
+  private final Counter failedCounter;
+  private final Counter saturatedCounter;
+
+  /**
+   * Whether WebP copies can be produced, resolved once at startup
+   */
+  private final boolean webpEncodingAvailable;
+
+  /**
+   * Encodings in progress, keyed by the file they produce
+   */
+  private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Permits bounding the number of encodings running at once
+   */
+  private final Semaphore encodingPermits;
+
+  // Directory where converted copies are cached, injected from application properties.
+  @Value("${app.upload.serving.negotiated-dir}")
+  private String negotiatedDir;
+
+  private Path negotiatedRootPath;
+
+  /**
+   * Creates the transcoder and registers its metrics.
+   *
+   * @param rentalImageVariants       image encoder
+   * @param meterRegistry             registry used to publish conversion counts
+   * @param maxConcurrentConversions maximum number of encodings running at once
+   */
+  public RentalImageTranscoder(RentalImageVariants rentalImageVariants,
+    MeterRegistry meterRegistry,
+    @Value("${app.upload.serving.max-concurrent-conversions}") int maxConcurrentConversions) {
+    if (maxConcurrentConversions < 1) {
+      throw new IllegalArgumentException("Maximum concurrent conversions must be positive");
+    }
+    this.rentalImageVariants = rentalImageVariants;
+    this.encodingPermits = new Semaphore(maxConcurrentConversions);
+    this.transcodedCounter = Counter.builder("rental.images.transcoded")
+      .description("Rental images converted to a format accepted by the client")
+      .register(meterRegistry);
+    this.failedCounter = Counter.builder("rental.images.transcode.failed")
+      .description("Rental image conversions that failed, the original being sent instead")
+      .register(meterRegistry);
+    this.saturatedCounter = Counter.builder("rental.images.transcode.saturated")
+      .description("Rental image conversions skipped because too many were running, the original "
+        + "being sent instead")
+      .register(meterRegistry);
+    this.webpEncodingAvailable = RentalImageVariants.canEncode(WEBP_TYPE);
+  }
+
+  /**
+   * Initializes the converted copies directory on application startup. Creates the directory if
+   * it doesn't exist.
+   */
+  @PostConstruct
+  void initializeNegotiatedPath() {
+    try {
+      negotiatedRootPath = Paths.get(negotiatedDir).toAbsolutePath().normalize();
+      Files.createDirectories(negotiatedRootPath);
+    } catch (IOException e) {
+      // Log and rethrow as unchecked exception to fail startup
+      log.error("Failed to initialize negotiated image directory: {}", negotiatedDir, e);
+      throw new IllegalStateException(
+        "Could not initialize negotiated image directory: " + negotiatedRootPath, e);
+    }
+    log.info("WebP encoding {}", webpEncodingAvailable ? "available" : "not available");
+  }
+
+  /**
+   * Returns the image to send for a request.
+   *
+   * @param image  the stored image
+   * @param accept the request's {@code Accept} header (may be null)
+   * @return the stored image, or a converted copy in a format the client prefers or requires; the
+   * stored image is marked as not cacheable when it is sent because the conversion was skipped or
+   * failed
+   */
+  public ServedImage negotiate(ServedImage image, String accept) {
+    String targetType = targetTypeFor(image.contentType(), accept);
+    if (targetType == null) {
+      return image;
+    }
+
+    // The original is still a valid answer, if not the preferred one (or not one the client
+    // can display), so it is sent but never cached in place of the converted copy
+    try {
+      ServedImage copy = copyOf(image, targetType);
+      return copy != null ? copy : image.uncacheable();
+    } catch (IOException | RuntimeException e) {
+      failedCounter.increment();
+      log.warn("Failed to convert {} to {}: {}", image.path(), targetType, e.getMessage());
+      return image.uncacheable();
+    }
+  }
+
+  /**
+   * Returns the directory holding converted copies, which the sweeper clears of old files.
+   *
+   * @return the absolute path of the directory
+   */
+  public Path getNegotiatedRootPath() {
+    return negotiatedRootPath;
+  }
+
+  /**
+   * Chooses the format to convert an image to.
+   *
+   * @return the target MIME type, or null to send the stored file
+   */
+  private String targetTypeFor(String contentType, String accept) {
+    if (!StringUtils.hasText(accept)) {
+      return null;
+    }
+
+    boolean acceptsWebp = listsWebp(accept);
+    if (WEBP_TYPE.equals(contentType)) {
+      return acceptsWebp ? null : JPEG_TYPE;
+    }
+    return acceptsWebp && webpEncodingAvailable ? WEBP_TYPE : null;
+  }
+
+  /**
+   * Indicates whether an {@code Accept} header explicitly lists WebP with a non-zero quality.
+   */
+  private static boolean listsWebp(String accept) {
+    try {
+      List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+      return mediaTypes.stream().anyMatch(mediaType -> !mediaType.isWildcardSubtype()
+        && WEBP_TYPE.equals(mediaType.getType() + "/" + mediaType.getSubtype())
+        && mediaType.getQualityValue() > 0);
+    } catch (InvalidMediaTypeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the converted copy of an image, encoding it if it is not cached yet. Only one thread
+   * encodes a given copy; the others wait for its result.
+   *
+   * @return the copy, or null if it is not cached and too many encodings are already running
+   */
+  private ServedImage copyOf(ServedImage image, String targetType) throws IOException {
+    Path target = negotiatedRootPath.resolve(copyFilename(image, targetType));
+    ServedImage cached = describe(image, target, targetType);
+    if (cached != null) {
+      return cached;
+    }
+
+    CompletableFuture<Path> flight = new CompletableFuture<>();
+    CompletableFuture<Path> running = inFlight.putIfAbsent(target, flight);
+    if (running == null) {
+      try {
+        // Another thread may have finished this copy between the lookup and the registration
+        if (!Files.exists(target) && !encodeIfPermitted(image.path(), target, targetType)) {
+          // Waiting requests send the original as well
+          flight.complete(null);
+          return null;
+        }
+        flight.complete(target);
+      } catch (Throwable e) {
+        flight.completeExceptionally(e);
+        throw e;
+      } finally {
+        inFlight.remove(target, flight);
+      }
+    } else if (await(running) == null) {
+      return null;
+    }
+
+    cached = describe(image, target, targetType);
+    if (cached == null) {
+      throw new IllegalStateException("Converted image disappeared: " + target);
+    }
+    return cached;
+  }
+
+  /**
+   * Encodes a copy if an encoding permit is available right away.
+   *
+   * @return false if all permits were taken and nothing was encoded
+   */
+  private boolean encodeIfPermitted(Path source, Path target, String targetType)
+    throws IOException {
+    if (!encodingPermits.tryAcquire()) {
+      saturatedCounter.increment();
+      log.debug("Too many image conversions running, sending {} unconverted", source);
+      return false;
+    }
+    try {
+      encode(source, target, targetType);
+      return true;
+    } finally {
+      encodingPermits.release();
+    }
+  }
+
+  /**
+   * Encodes a copy into a temporary file, then moves it into place so it is never read while
+   * partially written.
+   */
+  private void encode(Path source, Path target, String targetType) throws IOException {
+    Path temporary = Files.createTempFile(negotiatedRootPath, "negotiated_", ".tmp");
+    try {
+      rentalImageVariants.transcode(source, temporary, targetType);
+      try {
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+      transcodedCounter.increment();
+      log.debug("Converted {} to {}", source, targetType);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static Path await(CompletableFuture<Path> running) throws IOException {
+    try {
+      return running.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("Image conversion failed", e.getCause());
+    }
+  }
+
+  /**
+   * Describes a cached copy, which shares the original's modification time and cacheability.
+   *
+   * @return the copy's metadata, or null if it is not cached
+   */
+  private static ServedImage describe(ServedImage image, Path copy, String targetType)
+    throws IOException {
+    if (!Files.exists(copy)) {
+      return null;
+    }
+    BasicFileAttributes attributes = Files.readAttributes(copy, BasicFileAttributes.class);
+    // Each representation needs its own strong ETag
+    String etag = image.etag().substring(0, image.etag().length() - 1)
+      + EXTENSIONS.get(targetType).replace('.', '-') + "\"";
+    return new ServedImage(copy, attributes.size(), image.lastModified(), etag, targetType,
+      image.immutable(), true);
+  }
+
+  /**
+   * Names a copy after the original's location and ETag, so copies of replaced files are never
+   * reused.
+   */
+  private static String copyFilename(ServedImage image, String targetType) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(
+        (image.path() + "\n" + image.etag()).getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(hash, 0, 16) + EXTENSIONS.get(targetType);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package com.chatop.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Verifies that uploaded rental images are well-formed and within the configured dimension limits.
+ * <p>
+ * Two modes are supported:
+ * <ul>
+ *   <li>{@code header} (default): dimensions are read from the image header with an
+ *   {@link ImageReader}, and truncation is detected from the container's end marker. No pixels are
+ *   decoded, so validation costs a few kilobytes of heap regardless of the image size.</li>
+ *   <li>{@code decode}: the header checks above, followed by a full {@link ImageIO#read} of the
+ *   raster. Catches corruption inside the compressed data, at the cost of allocating the whole
+ *   bitmap.</li>
+ * </ul>
+ * Dimension limits are always enforced from the header, so decompression bombs (tiny files
+ * declaring huge images) are rejected before any decoding happens. The header checks
+ * ({@link #validate}) are cheap enough to run on the request thread before an upload is accepted;
+ * the full decode ({@link #validateDecodes}) runs where the image is processed.
+ */
+@Slf4j
+@Component
+public class RentalImageValidator {
+
+  /**
+   * Number of bytes read from each end of the file for the container checks
+   */
+  private static final int MARKER_BYTES = 12;
+
+  /**
+   * JPEG end-of-image marker
+   */
+  private static final byte[] JPEG_EOI = {(byte) 0xFF, (byte) 0xD9};
+
+  /**
+   * PNG IEND chunk (zero length, type, and CRC), always the last 12 bytes of a complete PNG
+   */
+  private static final byte[] PNG_IEND = {
+    0, 0, 0, 0, 'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82
+  };
+
+  // Validation mode ("header" or "decode"), injected from application properties.
+  @Value("${app.upload.validation.mode}")
+  private String mode;
+
+  // Maximum image width in pixels, injected from application properties.
+  @Value("${app.upload.validation.max-width}")
+  private int maxWidth;
+
+  // Maximum image height in pixels, injected from application properties.
+  @Value("${app.upload.validation.max-height}")
+  private int maxHeight;
+
+  // Maximum total pixel count (width x height), injected from application properties.
+  @Value("${app.upload.validation.max-pixels}")
+  private long maxPixels;
+
+  /**
+   * Validates an image stored on disk from its container markers and header, without decoding it.
+   *
+   * @param file     path of the image
+   * @param mimeType MIME type detected from the content
+   * @throws IllegalArgumentException if the image is invalid, truncated, or too large
+   * @throws IOException              if the file cannot be read
+   */
+  public void validate(Path file, String mimeType) throws IOException {
+    byte[] head = new byte[MARKER_BYTES];
+    byte[] tail = new byte[MARKER_BYTES];
+    long length;
+    try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+      length = channel.size();
+      readFully(channel, 0, head);
+      readFully(channel, Math.max(0, length - MARKER_BYTES), tail);
+    }
+    checkComplete(head, tail, length, mimeType);
+
+    try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+      checkHeader(input, mimeType);
+    }
+  }
+
+  /**
+   * Fully decodes an image that already passed {@link #validate} (decode mode only; does nothing
+   * in header mode).
+   *
+   * @param file path of the image
+   * @throws IllegalArgumentException if the image data is corrupted
+   * @throws IOException              if the file cannot be read
+   */
+  public void validateDecodes(Path file) throws IOException {
+    if (isDecodeMode()) {
+      checkDecodes(Files.newInputStream(file));
+    }
+  }
+
+  /**
+   * Reads the image dimensions from the header and checks them against the configured limits. The
+   * reader must agree with the sniffed MIME type, so a file cannot pass as one format while being
+   * decoded as another.
+   */
+  private void checkHeader(ImageInputStream input, String mimeType) throws IOException {
+    if (input == null) {
+      throw new IllegalArgumentException("Invalid or corrupted image file");
+    }
+
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+    if (!readers.hasNext()) {
+      throw new IllegalArgumentException("Invalid or corrupted image file");
+    }
+
+    ImageReader reader = readers.next();
+    try {
+      if (!supportsMimeType(reader, mimeType)) {
+        throw new IllegalArgumentException("Image content does not match type " + mimeType);
+      }
+
+      // Seek forward only and skip metadata: only the header is needed
+      reader.setInput(input, true, true);
+      int width = reader.getWidth(0);
+      int height = reader.getHeight(0);
+
+      if (width <= 0 || height <= 0) {
+        throw new IllegalArgumentException("Invalid or corrupted image file");
+      }
+      if (width > maxWidth || height > maxHeight) {
+        throw new IllegalArgumentException(
+          "Image dimensions " + width + "x" + height + " exceed the maximum of "
+            + maxWidth + "x" + maxHeight);
+      }
+      if ((long) width * height > maxPixels) {
+        throw new IllegalArgumentException(
+          "Image has more than the maximum of " + maxPixels + " pixels");
+      }
+
+      log.debug("Validated image header: {}x{} {}", width, height, mimeType);
+
+    } catch (IOException e) {
+      // Reader could not parse the header
+      throw new IllegalArgumentException("Invalid or corrupted image file", e);
+    } finally {
+      reader.dispose();
+    }
+  }
+
+  /**
+   * Rejects truncated uploads by checking the container's end marker (JPEG, PNG) or declared
+   * length (WebP), using only the first and last bytes of the file.
+   */
+  private void checkComplete(byte[] head, byte[] tail, long length, String mimeType) {
+    boolean complete = switch (mimeType) {
+      // Some encoders pad after the end-of-image marker, so look for it anywhere in the tail
+      case "image/jpeg" -> containsMarker(tail, JPEG_EOI);
+      case "image/png" -> endsWith(tail, PNG_IEND);
+      case "image/webp" -> {
+        // RIFF header: "RIFF", little-endian size of everything after the first 8 bytes, "WEBP"
+        long riffSize = ByteBuffer.wrap(head, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt()
+          & 0xFFFFFFFFL;
+        yield riffSize + 8 <= length;
+      }
+      default -> true;
+    };
+
+    if (length < MARKER_BYTES || !complete) {
+      throw new IllegalArgumentException("Image file is truncated");
+    }
+  }
+
+  /**
+   * Fully decodes the image (decode mode only).
+   */
+  private void checkDecodes(InputStream input) throws IOException {
+    try (input) {
+      if (ImageIO.read(input) == null) {
+        throw new IllegalArgumentException("Invalid or corrupted image file");
+      }
+    }
+  }
+
+  private boolean isDecodeMode() {
+    return "decode".equals(mode.toLowerCase(Locale.ROOT));
+  }
+
+  private static boolean supportsMimeType(ImageReader reader, String mimeType) {
+    String[] mimeTypes = reader.getOriginatingProvider().getMIMETypes();
+    return mimeTypes == null || Arrays.asList(mimeTypes).contains(mimeType);
+  }
+
+  private static boolean containsMarker(byte[] tail, byte[] marker) {
+    for (int i = 0; i + marker.length <= tail.length; i++) {
+      if (Arrays.equals(tail, i, i + marker.length, marker, 0, marker.length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean endsWith(byte[] tail, byte[] marker) {
+    return Arrays.equals(tail, tail.length - marker.length, tail.length, marker, 0, marker.length);
+  }
+
+  private static void readFully(SeekableByteChannel channel, long position, byte[] target)
+    throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(target);
+    channel.position(position);
+    while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+      // Keep reading until the buffer is full or the file ends
+    }
+  }
+}
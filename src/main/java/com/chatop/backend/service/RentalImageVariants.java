@@ -0,0 +1,358 @@
+package com.chatop.backend.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates resized copies of uploaded rental images so that clients can download a picture no
+ * larger than they display.
+ * <p>
+ * For every configured width, a JPEG named {@code <original name>_w<width>.jpg} is stored next to
+ * the original (images narrower than a target width are re-encoded at their own size, never
+ * upscaled). The widths actually stored with a picture are recorded on its rental, and variant
+ * URLs are derived from the picture URL and those widths only, so pictures stored before variants
+ * existed (or under other configured widths) never list variants that do not exist.
+ * <p>
+ * Variants are JPEG, which every client can display; WebP copies are produced on request by
+ * {@link RentalImageTranscoder} for clients that accept them.
+ * <p>
+ * Two WebP plugins are on the classpath: TwelveMonkeys, which reads WebP, and webp-imageio
+ * (libwebp), which also writes it. The libwebp reader ignores source subsampling and always
+ * decodes the full bitmap, so the TwelveMonkeys reader is registered ahead of it.
+ */
+@Slf4j
+@Component
+public class RentalImageVariants {
+
+  /**
+   * Marker inserted between the original filename stem and the variant width
+   */
+  private static final String WIDTH_MARKER = "_w";
+
+  /**
+   * File extension of every variant
+   */
+  private static final String VARIANT_EXTENSION = ".jpg";
+
+  /**
+   * MIME type of every variant
+   */
+  private static final String JPEG_TYPE = "image/jpeg";
+
+  /**
+   * Separator of the variant widths recorded on a rental
+   */
+  private static final String WIDTH_SEPARATOR = ",";
+
+  /**
+   * Matches variant filenames, capturing the original's stem
+   */
+  private static final Pattern VARIANT_FILENAME = Pattern.compile("(.+)_w\\d+\\.jpg");
+
+  static {
+    IIORegistry registry = IIORegistry.getDefaultInstance();
+    ImageReaderSpi subsamplingReader = registry.getServiceProviderByClass(
+      com.twelvemonkeys.imageio.plugins.webp.WebPImageReaderSpi.class);
+    ImageReaderSpi libwebpReader = registry.getServiceProviderByClass(
+      com.luciad.imageio.webp.WebPImageReaderSpi.class);
+    if (subsamplingReader != null && libwebpReader != null) {
+      registry.setOrdering(ImageReaderSpi.class, subsamplingReader, libwebpReader);
+    }
+  }
+
+  /**
+   * Configured variant widths in ascending order (empty when variants are disabled)
+   */
+  private final List<Integer> widths;
+
+  /**
+   * JPEG compression quality of the variants, between 0 and 1
+   */
+  private final float quality;
+
+  /**
+   * Creates the variant generator.
+   *
+   * @param widths  variant widths in pixels (empty to disable variants)
+   * @param quality JPEG compression quality of the variants, between 0 and 1
+   */
+  public RentalImageVariants(
+    @Value("${app.upload.variants.widths}") int[] widths,
+    @Value("${app.upload.variants.quality}") float quality) {
+    if (quality <= 0 || quality > 1) {
+      throw new IllegalArgumentException("Variant quality must be between 0 and 1");
+    }
+    this.widths = Arrays.stream(widths).sorted().distinct().boxed().toList();
+    this.quality = quality;
+  }
+
+  /**
+   * Indicates whether any variant is configured.
+   *
+   * @return true if variants are generated for uploads
+   */
+  public boolean isEnabled() {
+    return !widths.isEmpty();
+  }
+
+  /**
+   * Returns the configured variant widths.
+   *
+   * @return the widths in ascending order (empty when variants are disabled)
+   */
+  public List<Integer> getWidths() {
+    return widths;
+  }
+
+  /**
+   * Encodes every configured variant of an image into temporary files. The caller stores them and
+   * is responsible for deleting the files afterwards.
+   *
+   * @param source   the original image
+   * @param workDir  directory the temporary files are created in
+   * @param filename filename (or key) the original is stored under
+   * @return temporary variant files keyed by the filename (or key) they must be stored under
+   * @throws IllegalArgumentException if the image cannot be decoded
+   * @throws IOException              if a variant cannot be written
+   */
+  public Map<String, Path> generate(Path source, Path workDir, String filename)
+    throws IOException {
+    if (widths.isEmpty()) {
+      return Map.of();
+    }
+
+    BufferedImage image = decodeForWidth(source, widths.get(widths.size() - 1));
+    Map<String, Path> written = new LinkedHashMap<>();
+    try {
+      // Largest first, each scaled from the previous one, so every step is a modest reduction
+      List<Integer> descending = new ArrayList<>(widths);
+      Collections.reverse(descending);
+      for (int width : descending) {
+        image = scaleToWidth(image, width);
+        Path temporary = Files.createTempFile(workDir, "variant_", ".tmp");
+        written.put(variantFilename(filename, width), temporary);
+        write(image, temporary, JPEG_TYPE);
+      }
+    } catch (IOException | RuntimeException e) {
+      // Do not leave temporary files behind
+      for (Path variant : written.values()) {
+        Files.deleteIfExists(variant);
+      }
+      throw e;
+    }
+    return written;
+  }
+
+  /**
+   * Derives the variant URLs of a picture from its URL and the widths stored with it.
+   *
+   * @param pictureUrl    URL of the original picture (may be null)
+   * @param variantWidths comma-separated widths of the stored variants, as recorded on the rental
+   *                      (may be null)
+   * @return variant URLs keyed by width in ascending order, or null if there is no picture or it
+   * has no stored variants
+   */
+  public Map<Integer, String> variantUrls(String pictureUrl, String variantWidths) {
+    if (pictureUrl == null || variantWidths == null || variantWidths.isEmpty()) {
+      return null;
+    }
+    Map<Integer, String> urls = new LinkedHashMap<>();
+    for (String width : variantWidths.split(WIDTH_SEPARATOR)) {
+      urls.put(Integer.valueOf(width), variantFilename(pictureUrl, Integer.parseInt(width)));
+    }
+    return urls;
+  }
+
+  /**
+   * Formats variant widths the way they are recorded on a rental.
+   *
+   * @param widths the widths of the stored variants, in ascending order
+   * @return the comma-separated widths, or null if there are none
+   */
+  public static String joinWidths(List<Integer> widths) {
+    if (widths.isEmpty()) {
+      return null;
+    }
+    return widths.stream().map(String::valueOf).collect(Collectors.joining(WIDTH_SEPARATOR));
+  }
+
+  /**
+   * Indicates whether images can be encoded in a format, by encoding a single pixel: a writer
+   * backed by a native library (such as WebP's) is registered even where the library fails to load.
+   *
+   * @param mimeType the MIME type of the format
+   * @return true if an image writer is registered for the format and works on this platform
+   */
+  public static boolean canEncode(String mimeType) {
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(mimeType);
+    if (!writers.hasNext()) {
+      return false;
+    }
+    ImageWriter writer = writers.next();
+    try (ImageOutputStream output =
+      ImageIO.createImageOutputStream(new ByteArrayOutputStream())) {
+      writer.setOutput(output);
+      writer.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+      return true;
+    } catch (IOException | LinkageError e) {
+      log.warn("Image writer for {} is not usable: {}", mimeType, e.toString());
+      return false;
+    } finally {
+      writer.dispose();
+    }
+  }
+
+  /**
+   * Re-encodes an image in another format at its own size, with the configured quality. Transparent
+   * areas become white when the target format (JPEG) has no alpha channel.
+   *
+   * @param source   the image to convert
+   * @param target   file the converted image is written to
+   * @param mimeType MIME type of the target format
+   * @throws IllegalArgumentException if the image cannot be decoded
+   * @throws IOException              if the converted image cannot be written
+   */
+  public void transcode(Path source, Path target, String mimeType) throws IOException {
+    BufferedImage image = decodeForWidth(source, Integer.MAX_VALUE);
+    if (JPEG_TYPE.equals(mimeType)) {
+      image = scaleToWidth(image, image.getWidth());
+    }
+    write(image, target, mimeType);
+  }
+
+  /**
+   * Returns the filename stem of the original a variant belongs to, e.g.
+   * {@code rental_1_1731254789123_w640.jpg} gives {@code rental_1_1731254789123}.
+   *
+   * @param filename a filename in the upload directory
+   * @return the original's stem, or null if the file is not a variant
+   */
+  public static String originalStemOf(String filename) {
+    Matcher matcher = VARIANT_FILENAME.matcher(filename);
+    return matcher.matches() ? matcher.group(1) : null;
+  }
+
+  /**
+   * Returns the variant filename (or URL, or key) for an original filename (or URL, or key) and a
+   * width, e.g. {@code rental_1_1731254789123.png} becomes {@code rental_1_1731254789123_w640.jpg}.
+   *
+   * @param original the original's filename, URL, or key
+   * @param width    the variant width
+   * @return the variant's filename, URL, or key
+   */
+  public static String variantFilename(String original, int width) {
+    int slash = original.lastIndexOf('/');
+    int dot = original.lastIndexOf('.');
+    String stem = dot > slash ? original.substring(0, dot) : original;
+    return stem + WIDTH_MARKER + width + VARIANT_EXTENSION;
+  }
+
+  /**
+   * Decodes an image, letting the reader skip pixels (source subsampling) when the original is at
+   * least twice as wide as the largest variant, so large uploads never need a full-size bitmap.
+   */
+  private static BufferedImage decodeForWidth(Path source, int targetWidth) throws IOException {
+    try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+      Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+      if (readers == null || !readers.hasNext()) {
+        throw new IllegalArgumentException("Invalid or corrupted image file");
+      }
+
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        int subsampling = Math.max(1, reader.getWidth(0) / targetWidth);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return reader.read(0, param);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Invalid or corrupted image file", e);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Scales an image down to the given width, keeping its aspect ratio. The result is always an
+   * opaque RGB image (transparent areas become white) so it can be encoded as JPEG.
+   */
+  private static BufferedImage scaleToWidth(BufferedImage image, int width) {
+    int targetWidth = Math.min(width, image.getWidth());
+    int targetHeight = Math.max(1,
+      (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+
+    if (targetWidth == image.getWidth() && image.getType() == BufferedImage.TYPE_INT_RGB) {
+      return image;
+    }
+
+    BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = scaled.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      graphics.setColor(Color.WHITE);
+      graphics.fillRect(0, 0, targetWidth, targetHeight);
+      graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+    } finally {
+      graphics.dispose();
+    }
+    return scaled;
+  }
+
+  /**
+   * Encodes an image in the given format, with the configured quality when the format is lossy.
+   */
+  private void write(BufferedImage image, Path target, String mimeType) throws IOException {
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(mimeType);
+    if (!writers.hasNext()) {
+      throw new IllegalStateException("No image writer available for " + mimeType);
+    }
+    ImageWriter writer = writers.next();
+    try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      if (param.canWriteCompressed()) {
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+          param.setCompressionType(param.getCompressionTypes()[0]);
+        }
+        param.setCompressionQuality(quality);
+      }
+      writer.setOutput(output);
+      writer.write(null, new IIOImage(image, null, null), param);
+      log.debug("Encoded {} image {}x{}", mimeType, image.getWidth(), image.getHeight());
+    } finally {
+      writer.dispose();
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.cache.BoundedTtlCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Read-through cache of rental responses keyed by rental ID, used by
+ * {@link RentalService#getVersionedRental(Long)}. Each entry keeps the version the response was
+ * built from, so conditional requests are answered from the cache as well. Entries are bounded in
+ * number, expire after a configurable TTL, and are invalidated after every committed create or
+ * update of the rental. Loads racing with an invalidation are never written back, so an outdated
+ * response cannot be re-cached after a change.
+ */
+@Component
+public class RentalResponseCache {
+
+  private final BoundedTtlCache<Long, VersionedRental> cache;
+
+  /**
+   * Creates the rental cache and registers its metrics.
+   *
+   * @param maxSize       maximum number of cached rentals
+   * @param ttlSeconds    maximum lifetime of a cached rental in seconds
+   * @param meterRegistry registry used to publish cache statistics
+   */
+  public RentalResponseCache(
+    @Value("${app.rentals.cache.max-size}") int maxSize,
+    @Value("${app.rentals.cache.ttl-seconds}") long ttlSeconds,
+    MeterRegistry meterRegistry) {
+    this.cache = new BoundedTtlCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+    this.cache.bindMetrics(meterRegistry, "rentals");
+  }
+
+  /**
+   * Returns the cached response for a rental, loading it on a miss.
+   *
+   * @param rentalId the rental ID
+   * @param loader   function loading the response from the database (null if not found)
+   * @return the rental response and its version, or null if the rental does not exist
+   */
+  public VersionedRental get(Long rentalId, Function<Long, VersionedRental> loader) {
+    return cache.getOrLoad(rentalId, loader);
+  }
+
+  /**
+   * Evicts a rental once the transaction that changed it has committed. Runs immediately when the
+   * change was made outside a transaction.
+   *
+   * @param event the rental change notification
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onRentalChanged(RentalChangedEvent event) {
+    cache.invalidate(event.rentalId());
+  }
+
+  public double getHitRatio() {
+    return cache.getHitRatio();
+  }
+}
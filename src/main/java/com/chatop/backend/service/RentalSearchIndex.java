@@ -0,0 +1,179 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.exception.ServiceOverloadedException;
+import com.chatop.backend.repository.RentalRepository;
+import com.chatop.backend.repository.RentalView;
+import com.chatop.backend.search.InvertedIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-memory full-text index of rental names and descriptions, used by
+ * {@link RentalService#searchRentals(String, Integer)} so that searches never scan the rentals
+ * table.
+ * <p>
+ * The index is built from the database once the application is ready, then kept current from the
+ * {@link RentalChangedEvent}s published on every create and update, by re-reading the rental after
+ * commit. A periodic refresh also re-indexes the rentals modified since the previous one, which
+ * picks up changes made by other instances and changes that raced with the initial build. Searches
+ * are rejected with 503 until the initial build has completed.
+ */
+@Slf4j
+@Component
+public class RentalSearchIndex {
+
+  /**
+   * Weight of a word in the rental name relative to one in the description
+   */
+  private static final float NAME_WEIGHT = 3;
+
+  /**
+   * Number of rentals read per query while building the index
+   */
+  private static final int BUILD_BATCH_SIZE = 1000;
+
+  /**
+   * Time before the previous refresh that is read again, covering clock differences between
+   * instances, transactions committing after their timestamp, and second-precision timestamps
+   */
+  private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+  /**
+   * Delay suggested to clients while the index is being built
+   */
+  private static final long RETRY_AFTER_SECONDS = 5;
+
+  private final InvertedIndex index = new InvertedIndex(NAME_WEIGHT, 1);
+
+  private final RentalRepository rentalRepository;
+
+  // Serializes the initial build and the refreshes, which run on different threads
+  private final ReentrantLock refreshLock = new ReentrantLock();
+
+  private volatile boolean ready;
+
+  // Start time of the last successful build or refresh, guarded by refreshLock
+  private LocalDateTime refreshedAt;
+
+  /**
+   * Creates the (empty) search index and registers its metrics.
+   *
+   * @param rentalRepository repository the index is built from
+   * @param meterRegistry    registry used to publish the index size
+   */
+  public RentalSearchIndex(RentalRepository rentalRepository, MeterRegistry meterRegistry) {
+    this.rentalRepository = rentalRepository;
+    Gauge.builder("rentals.search.documents", index, InvertedIndex::size)
+      .register(meterRegistry);
+    Gauge.builder("rentals.search.terms", index, InvertedIndex::termCount)
+      .register(meterRegistry);
+  }
+
+  /**
+   * Returns the IDs of the rentals best matching a query, best first.
+   *
+   * @param query the search query
+   * @param limit maximum number of IDs to return
+   * @return the matching rental IDs (empty if nothing matches)
+   * @throws ServiceOverloadedException if the index has not been built yet
+   */
+  public long[] search(String query, int limit) {
+    if (!ready) {
+      throw new ServiceOverloadedException("Search index is being built", RETRY_AFTER_SECONDS);
+    }
+    return index.search(query, limit);
+  }
+
+  /**
+   * Builds the index once the application has started. The application only reports itself ready
+   * to accept traffic afterwards.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    refresh();
+  }
+
+  /**
+   * Re-indexes the rentals modified since the previous refresh, or builds the whole index if it
+   * has not been built yet (for example because the database was unavailable on startup). Runs at
+   * the configured interval.
+   */
+  @Scheduled(
+    initialDelayString = "${app.rentals.search.refresh-ms}",
+    fixedDelayString = "${app.rentals.search.refresh-ms}")
+  public void refresh() {
+    if (!refreshLock.tryLock()) {
+      // Already running
+      return;
+    }
+    try {
+      LocalDateTime startedAt = LocalDateTime.now();
+      if (ready) {
+        List<RentalView> rentals =
+          rentalRepository.findUpdatedSince(refreshedAt.minus(REFRESH_OVERLAP));
+        rentals.forEach(this::add);
+        log.debug("Re-indexed {} recently modified rentals", rentals.size());
+      } else {
+        build();
+        ready = true;
+        log.info("Rental search index built: {} rentals, {} terms",
+          index.size(), index.termCount());
+      }
+      refreshedAt = startedAt;
+    } catch (DataAccessException e) {
+      log.warn("Rental search index refresh failed: {}", e.getMessage(), e);
+    } finally {
+      refreshLock.unlock();
+    }
+  }
+
+  /**
+   * Re-indexes a rental once the transaction that changed it has committed. Runs immediately when
+   * the change was made outside a transaction.
+   *
+   * @param event the rental change notification
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onRentalChanged(RentalChangedEvent event) {
+    try {
+      rentalRepository.findViewById(event.rentalId()).ifPresent(this::add);
+    } catch (DataAccessException e) {
+      // The change is committed; the next refresh indexes it
+      log.warn("Failed to index rental {}: {}", event.rentalId(), e.getMessage());
+    }
+  }
+
+  /**
+   * Indexes every rental, reading them in keyset-paginated batches so that no connection or large
+   * result set is held for the whole build.
+   */
+  private void build() {
+    Limit limit = Limit.of(BUILD_BATCH_SIZE);
+    List<RentalView> rentals = rentalRepository.findFirstPage(limit);
+    while (!rentals.isEmpty()) {
+      rentals.forEach(this::add);
+      if (rentals.size() < BUILD_BATCH_SIZE) {
+        return;
+      }
+      RentalView last = rentals.get(rentals.size() - 1);
+      rentals = rentalRepository.findPageAfter(last.createdAt(), last.id(), limit);
+    }
+  }
+
+  private void add(RentalView rental) {
+    index.put(rental.id(), rental.name(), rental.description());
+  }
+}
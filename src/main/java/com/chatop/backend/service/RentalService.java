@@ -3,6 +3,7 @@ package com.chatop.backend.service;
 import com.chatop.backend.dto.RentalCreateRequest;
 import com.chatop.backend.dto.RentalListItemResponse;
 import com.chatop.backend.dto.RentalListResponse;
+import com.chatop.backend.dto.RentalPageResponse;
 import com.chatop.backend.dto.RentalUpdateRequest;
 import com.chatop.backend.dto.SingleRentalResponse;
 import com.chatop.backend.dto.StatusMessageResponse;
@@ -10,10 +11,26 @@ import com.chatop.backend.exception.ResourceNotFoundException;
 import com.chatop.backend.model.Rental;
 import com.chatop.backend.model.User;
 import com.chatop.backend.repository.RentalRepository;
+import com.chatop.backend.repository.RentalVersion;
+import com.chatop.backend.repository.RentalView;
+import com.chatop.backend.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,20 +47,53 @@ public class RentalService {
    * Date formatter for converting timestamps to "yyyy/MM/dd" format in API responses.
    */
   private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+  /**
+   * Number of rentals written between output flushes when streaming
+   */
+  private static final int STREAM_BATCH_SIZE = 100;
   private final RentalRepository rentalRepository;
+  private final UserRepository userRepository;
+  private final ObjectMapper objectMapper;
   /**
    * Image storage service used to validate and save uploaded rental pictures
    */
   private final RentalImageStorageService rentalImageStorageService;
+  /**
+   * Background pipeline that validates and stores spooled pictures after the rental commits
+   */
+  private final RentalImagePipeline rentalImagePipeline;
+  /**
+   * Derives resized picture variant URLs for list items
+   */
+  private final RentalImageVariants rentalImageVariants;
+  /**
+   * Read-through cache of single rental responses, invalidated on every committed change
+   */
+  private final RentalResponseCache rentalResponseCache;
+  /**
+   * In-memory full-text index of rental names and descriptions
+   */
+  private final RentalSearchIndex rentalSearchIndex;
+  private final ApplicationEventPublisher eventPublisher;
+
+  // Default number of rentals per page, injected from application properties.
+  @Value("${app.rentals.page-size}")
+  private int defaultPageSize;
+
+  // Upper bound on the page size a client may request, injected from application properties.
+  @Value("${app.rentals.max-page-size}")
+  private int maxPageSize;
 
   /**
-   * Retrieves all rentals from the database and converts them into DTOs.
+   * Retrieves all rentals from the database and converts them into DTOs. Kept for clients that
+   * expect the full list; prefer {@link #getRentalPage(String, Integer)} or
+   * {@link #streamAllRentals(OutputStream)} for large catalogues.
    *
    * @return a response containing the list of all rentals
    */
   public RentalListResponse getAllRentals() {
     List<RentalListItemResponse> rentalItems =
-      rentalRepository.findAll().stream()
+      rentalRepository.findAllViews().stream()
         .map(this::toRentalListItem)
         .collect(Collectors.toList());
 
@@ -51,61 +101,217 @@ public class RentalService {
   }
 
   /**
-   * Retrieves a single rental by its ID and converts it to a DTO.
+   * Streams all rentals as JSON, in the same {@code {"rentals": [...]}} shape as
+   * {@link #getAllRentals()}, without ever holding the full list in memory. Rentals are read
+   * through a database cursor as unmanaged projections and written one by one with a Jackson
+   * {@link JsonGenerator}, so heap usage stays flat regardless of table size.
+   *
+   * @param outputStream the response body stream to write to
+   * @throws IOException if writing to the client fails
+   */
+  @Transactional(readOnly = true) // Keeps the connection and cursor open while streaming
+  public void streamAllRentals(OutputStream outputStream) throws IOException {
+    try (Stream<RentalView> rentals = rentalRepository.streamAll();
+      JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+      // The servlet container owns the response stream
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("rentals");
+
+      int written = 0;
+      Iterator<RentalView> iterator = rentals.iterator();
+      while (iterator.hasNext()) {
+        generator.writeObject(toRentalListItem(iterator.next()));
+        if (++written % STREAM_BATCH_SIZE == 0) {
+          // Push what has been written so far to the client
+          generator.flush();
+        }
+      }
+
+      generator.writeEndArray();
+      generator.writeEndObject();
+      generator.flush();
+    }
+  }
+
+  /**
+   * Retrieves one page of rentals, newest first, using keyset pagination on (created_at, id). Only
+   * the requested page is loaded, whatever the size of the table.
+   *
+   * @param cursor opaque cursor from a previous page, or null for the first page
+   * @param size   requested page size, or null for the configured default
+   * @return the page of rentals and the cursor to the next page (null on the last page)
+   * @throws IllegalArgumentException if the cursor is malformed or the size is not positive
+   */
+  public RentalPageResponse getRentalPage(String cursor, Integer size) {
+    int pageSize = pageSizeOf(size);
+
+    // Fetch one extra row to know whether another page follows
+    Limit limit = Limit.of(pageSize + 1);
+    List<RentalView> rentals;
+    if (cursor == null || cursor.isBlank()) {
+      rentals = rentalRepository.findFirstPage(limit);
+    } else {
+      KeysetCursor position = KeysetCursor.decode(cursor);
+      rentals = rentalRepository.findPageAfter(position.createdAt(), position.id(), limit);
+    }
+
+    String nextCursor = null;
+    if (rentals.size() > pageSize) {
+      rentals = rentals.subList(0, pageSize);
+      RentalView last = rentals.get(pageSize - 1);
+      nextCursor = new KeysetCursor(last.createdAt(), last.id()).encode();
+    }
+
+    List<RentalListItemResponse> rentalItems = rentals.stream()
+      .map(this::toRentalListItem)
+      .collect(Collectors.toList());
+
+    return new RentalPageResponse(rentalItems, nextCursor);
+  }
+
+  /**
+   * Searches rental names and descriptions, best matches first (BM25 ranking, accents ignored).
+   * Matching rentals are found in the in-memory {@link RentalSearchIndex}; only the returned
+   * rentals are then loaded, by primary key.
+   *
+   * @param query the words to search for; the last one also matches the longer words it begins
+   * @param size  maximum number of rentals to return, or null for the configured default
+   * @return the matching rentals, best first
+   * @throws IllegalArgumentException if the query is blank or the size is not positive
+   */
+  public RentalListResponse searchRentals(String query, Integer size) {
+    if (query == null || query.isBlank()) {
+      throw new IllegalArgumentException("Search query must not be blank");
+    }
+
+    long[] ids = rentalSearchIndex.search(query, pageSizeOf(size));
+    if (ids.length == 0) {
+      return new RentalListResponse(List.of());
+    }
+
+    List<Long> rankedIds = Arrays.stream(ids).boxed().collect(Collectors.toList());
+    Map<Long, RentalView> rentalsById = rentalRepository.findViewsByIdIn(rankedIds).stream()
+      .collect(Collectors.toMap(RentalView::id, Function.identity()));
+    List<RentalListItemResponse> rentalItems = rankedIds.stream()
+      .map(rentalsById::get)
+      // Skips rentals deleted from the database since they were indexed
+      .filter(Objects::nonNull)
+      .map(this::toRentalListItem)
+      .collect(Collectors.toList());
+
+    return new RentalListResponse(rentalItems);
+  }
+
+  /**
+   * Retrieves a single rental by its ID and converts it to a DTO. Served from the rental cache when
+   * possible; the database is only queried on a miss.
    *
    * @param id the ID of the rental
    * @return the corresponding SingleRentalResponse DTO, or null if not found
    */
   public SingleRentalResponse getRentalById(Long id) {
-    return rentalRepository.findById(id)
-      .map(this::toSingleRentalResponse)
-      .orElse(null);
+    VersionedRental rental = getVersionedRental(id);
+    return rental != null ? rental.response() : null;
+  }
+
+  /**
+   * Retrieves a single rental with the version it was built from, for conditional requests.
+   * Served from the rental cache when possible; the database is only queried on a miss.
+   *
+   * @param id the ID of the rental
+   * @return the rental response and its version, or null if not found
+   */
+  public VersionedRental getVersionedRental(Long id) {
+    return rentalResponseCache.get(id, rentalId ->
+      rentalRepository.findViewById(rentalId)
+        .map(rental -> new VersionedRental(toSingleRentalResponse(rental),
+          new RentalVersion(1L, rental.updatedAt())))
+        .orElse(null));
   }
 
   /**
-   * Converts a Rental entity into a RentalListItem DTO. Formats timestamps to "yyyy/MM/dd" format
-   * for the API response.
+   * Returns the version of the whole rentals collection, for conditional requests on listings.
    *
-   * @param rental the Rental entity to convert
+   * @return the number of rentals and their latest modification time
+   */
+  public RentalVersion getCollectionVersion() {
+    return rentalRepository.findCollectionVersion();
+  }
+
+  /**
+   * Resolves a requested page size: the configured default when absent, capped at the maximum.
+   *
+   * @param size requested page size, or null
+   * @return the page size to use
+   * @throws IllegalArgumentException if the size is not positive
+   */
+  private int pageSizeOf(Integer size) {
+    int pageSize = size != null ? size : defaultPageSize;
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive");
+    }
+    return Math.min(pageSize, maxPageSize);
+  }
+
+  /**
+   * Converts a rental projection into a RentalListItem DTO. Formats timestamps to "yyyy/MM/dd"
+   * format for the API response and adds the URLs of the picture's resized variants.
+   *
+   * @param rental the rental projection to convert
    * @return a DTO representing the rental
    */
-  private RentalListItemResponse toRentalListItem(Rental rental) {
+  private RentalListItemResponse toRentalListItem(RentalView rental) {
     return new RentalListItemResponse(
-      rental.getId(),
-      rental.getName(),
-      rental.getSurface(),
-      rental.getPrice(),
-      rental.getPicture(),
-      rental.getDescription(),
-      rental.getOwner().getId(),
-      rental.getCreatedAt() != null ? rental.getCreatedAt().format(DATE_FORMATTER) : null,
-      rental.getUpdatedAt() != null ? rental.getUpdatedAt().format(DATE_FORMATTER) : null);
+      rental.id(),
+      rental.name(),
+      rental.surface(),
+      rental.price(),
+      rental.picture(),
+      rentalImageVariants.variantUrls(rental.picture(), rental.pictureVariants()),
+      rental.description(),
+      rental.ownerId(),
+      rental.createdAt() != null ? rental.createdAt().format(DATE_FORMATTER) : null,
+      rental.updatedAt() != null ? rental.updatedAt().format(DATE_FORMATTER) : null);
   }
 
   /**
    * Identical to toRentalListItem but returns SingleRentalResponse DTO which wraps picture in a
    * list to match Mockoon schema.
    *
-   * @param rental the Rental entity to convert
+   * @param rental the rental projection to convert
    * @return a DTO representing the single rental
    */
-  private SingleRentalResponse toSingleRentalResponse(Rental rental) {
+  private SingleRentalResponse toSingleRentalResponse(RentalView rental) {
     return new SingleRentalResponse(
-      rental.getId(),
-      rental.getName(),
-      rental.getSurface(),
-      rental.getPrice(),
-      List.of(rental.getPicture()), // Assuming single picture wrapped in a list
-      rental.getDescription(),
-      rental.getOwner().getId(),
-      rental.getCreatedAt() != null ? rental.getCreatedAt().format(DATE_FORMATTER) : null,
-      rental.getUpdatedAt() != null ? rental.getUpdatedAt().format(DATE_FORMATTER) : null);
+      rental.id(),
+      rental.name(),
+      rental.surface(),
+      rental.price(),
+      // Assuming single picture wrapped in a list (empty while the picture is still processing)
+      rental.picture() != null ? List.of(rental.picture()) : List.of(),
+      rental.description(),
+      rental.ownerId(),
+      rental.createdAt() != null ? rental.createdAt().format(DATE_FORMATTER) : null,
+      rental.updatedAt() != null ? rental.updatedAt().format(DATE_FORMATTER) : null);
   }
 
   /**
-   * Creates a new rental listing for the specified owner. Persists a new Rental entity without a
-   * picture URL to obtain the generated ID, saves the image using RentalImageStorageService,
-   * updates the Rental with the returned URL, and commits the transaction.
+   * Creates a new rental listing for the specified owner. The owner is referenced by ID, without
+   * loading the user, and the picture is handled in one of three ways:
+   * <ul>
+   *   <li>asynchronous pipeline enabled: the picture is only spooled to disk and validated from its
+   *   header here (invalid pictures are rejected before anything is inserted); it is stored with
+   *   its variants in the background after commit, and the rental's picture URL is filled in once
+   *   processing finishes</li>
+   *   <li>content-addressed naming: the image key does not depend on the rental, so the image is
+   *   stored first and the rental is inserted with its picture URL in a single statement (if the
+   *   insert fails, the unreferenced image is removed by {@link RentalImageSweeper})</li>
+   *   <li>otherwise: the rental is inserted to obtain the generated ID used in the image name, then
+   *   updated with the URL returned by RentalImageStorageService before the transaction
+   *   commits</li>
+   * </ul>
    *
    * @param request multipart form containing name, surface, price, description, and picture
    * @param owner   the authenticated user creating the rental
@@ -113,24 +319,45 @@ public class RentalService {
    */
   @Transactional // Ensures if the initial insert or the update fails, no rental is persisted
   public StatusMessageResponse createRental(RentalCreateRequest request, User owner) {
-    // Create Rental entity without picture
+    // Spool and validate the upload first so invalid files are rejected before anything is inserted
+    boolean storeFirst = !rentalImagePipeline.isEnabled()
+      && rentalImageStorageService.isContentAddressed();
+    SpooledImage spooledImage = rentalImagePipeline.isEnabled() || storeFirst
+      ? rentalImageStorageService.spoolRentalImage(request.getPicture())
+      : null;
+
     Rental rental = new Rental();
     rental.setName(request.getName());
     rental.setSurface(request.getSurface());
     rental.setPrice(request.getPrice());
     rental.setDescription(request.getDescription());
-    rental.setOwner(owner);
+    // Foreign key only: a missing owner is reported by the constraint on insert
+    rental.setOwner(userRepository.getReferenceById(owner.getId()));
+    if (storeFirst) {
+      // Key derived from the content hash: the URL is known before the rental exists
+      StoredPicture picture = rentalImageStorageService.storeSpooledImage(spooledImage, null);
+      rental.setPicture(picture.url());
+      rental.setPictureVariants(picture.variantWidths());
+    }
     // Persist to get generated ID
     rental = rentalRepository.save(rental);
 
-    // Save image and get URL
-    String pictureUrl =
-      rentalImageStorageService.saveRentalImage(request.getPicture(), rental.getId());
+    if (rentalImagePipeline.isEnabled()) {
+      // Picture URL is recorded by the pipeline once the image has been processed
+      rentalImagePipeline.submitAfterCommit(rental.getId(), spooledImage);
+    } else if (!storeFirst) {
+      // Save image and get URL
+      StoredPicture picture =
+        rentalImageStorageService.saveRentalImage(request.getPicture(), rental.getId());
 
-    // Update rental with picture URL
-    rental.setPicture(pictureUrl);
-    // Save updated rental
-    rentalRepository.save(rental);
+      // Update rental with picture URL
+      rental.setPicture(picture.url());
+      rental.setPictureVariants(picture.variantWidths());
+      // Save updated rental
+      rentalRepository.save(rental);
+    }
+    // Notify caches once the transaction commits
+    eventPublisher.publishEvent(new RentalChangedEvent(rental.getId()));
 
     // Return status message
     return new StatusMessageResponse("Rental created!");
@@ -138,8 +365,9 @@ public class RentalService {
 
   /**
    * Updates an existing rental. Only the owner can perform the update. If a new picture is
-   * uploaded, it replaces the old one in the database, but the old image file remains on disk. At
-   * least one field must be provided; otherwise, a 400 Bad Request is thrown.
+   * uploaded, it replaces the old one in the database, but the old image file remains on disk. With
+   * the asynchronous pipeline enabled, the new picture replaces the old one once it has been
+   * processed. At least one field must be provided; otherwise, a 400 Bad Request is thrown.
    *
    * @param rentalId ID of rental to update
    * @param request  multipart form data with updated fields
@@ -178,9 +406,17 @@ public class RentalService {
       updated = true;
     }
     if (request.getPicture() != null && !request.getPicture().isEmpty()) {
-      String pictureUrl =
-        rentalImageStorageService.saveRentalImage(request.getPicture(), rental.getId());
-      rental.setPicture(pictureUrl);
+      if (rentalImagePipeline.isEnabled()) {
+        // Old picture stays in place until the new one has been processed
+        SpooledImage spooledImage =
+          rentalImageStorageService.spoolRentalImage(request.getPicture());
+        rentalImagePipeline.submitAfterCommit(rental.getId(), spooledImage);
+      } else {
+        StoredPicture picture =
+          rentalImageStorageService.saveRentalImage(request.getPicture(), rental.getId());
+        rental.setPicture(picture.url());
+        rental.setPictureVariants(picture.variantWidths());
+      }
       updated = true;
     }
 
@@ -190,6 +426,8 @@ public class RentalService {
     }
 
     rentalRepository.save(rental);
+    // Notify caches once the transaction commits
+    eventPublisher.publishEvent(new RentalChangedEvent(rental.getId()));
 
     return new StatusMessageResponse("Rental updated!");
   }
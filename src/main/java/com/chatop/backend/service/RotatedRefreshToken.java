@@ -0,0 +1,16 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.model.User;
+
+/**
+ * Outcome of a successful refresh token rotation.
+ *
+ * @param user         the user the token belongs to
+ * @param refreshToken the new refresh token value, replacing the one presented
+ */
+public record RotatedRefreshToken(
+  User user,
+  String refreshToken
+) {
+
+}
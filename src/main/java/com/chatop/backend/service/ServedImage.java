@@ -0,0 +1,35 @@
+package com.chatop.backend.service;
+
+import java.nio.file.Path;
+
+/**
+ * Metadata of a locally stored image, resolved once and reused to answer image requests.
+ *
+ * @param path         location of the file
+ * @param length       file size in bytes
+ * @param lastModified modification time in epoch milliseconds
+ * @param etag         strong entity tag, including quotes
+ * @param contentType  MIME type derived from the file extension
+ * @param immutable    whether the file is content-addressed and therefore never changes
+ * @param cacheable    whether the response may be stored by caches (false when this file is sent
+ *                     in place of a conversion that could not be made)
+ */
+public record ServedImage(
+  Path path,
+  long length,
+  long lastModified,
+  String etag,
+  String contentType,
+  boolean immutable,
+  boolean cacheable
+) {
+
+  /**
+   * Returns this image marked as not to be stored by caches.
+   *
+   * @return a copy of this image that is not cacheable
+   */
+  public ServedImage uncacheable() {
+    return new ServedImage(path, length, lastModified, etag, contentType, immutable, false);
+  }
+}
@@ -0,0 +1,17 @@
+package com.chatop.backend.service;
+
+import java.nio.file.Path;
+
+/**
+ * An uploaded rental image that has been copied to the spool directory and passed the cheap
+ * synchronous checks (size, MIME type, and header validation), but not yet been decoded or moved
+ * into the image store.
+ *
+ * @param path        location of the spooled file
+ * @param mimeType    MIME type detected from the file content
+ * @param size        file size in bytes
+ * @param contentHash hex SHA-256 of the content (null unless images are content-addressed)
+ */
+public record SpooledImage(Path path, String mimeType, long size, String contentHash) {
+
+}
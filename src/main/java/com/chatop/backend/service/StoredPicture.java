@@ -0,0 +1,12 @@
+package com.chatop.backend.service;
+
+/**
+ * A rental picture that has been put in the image store.
+ *
+ * @param url           URL path for accessing the picture
+ * @param variantWidths comma-separated widths of the resized variants stored with it (null if
+ *                      none), see {@link RentalImageVariants}
+ */
+public record StoredPicture(String url, String variantWidths) {
+
+}
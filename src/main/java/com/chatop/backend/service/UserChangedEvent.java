@@ -0,0 +1,11 @@
+package com.chatop.backend.service;
+
+/**
+ * Published whenever a user row is modified. Listeners that keep derived copies of user data (such
+ * as the principal cache) drop them once the change has committed.
+ *
+ * @param email the email the user had before the change, which cached copies are keyed on
+ */
+public record UserChangedEvent(String email) {
+
+}
@@ -0,0 +1,18 @@
+package com.chatop.backend.service;
+
+import com.chatop.backend.dto.SingleRentalResponse;
+import com.chatop.backend.repository.RentalVersion;
+
+/**
+ * A rental response together with the version it was built from, cached as one entry so that the
+ * validators sent with a response always describe that exact response.
+ *
+ * @param response the rental response
+ * @param version  the rental's version (count 1 and its {@code updated_at})
+ */
+public record VersionedRental(
+  SingleRentalResponse response,
+  RentalVersion version
+) {
+
+}
@@ -0,0 +1,173 @@
+package com.chatop.backend.storage;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores rental images as files under {@code app.upload.dir}. This is the default store; files are
+ * served by the application itself (see
+ * {@link com.chatop.backend.controller.RentalImageController}).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.upload.store", havingValue = "local", matchIfMissing = true)
+public class LocalRentalImageStore implements RentalImageStore {
+
+  /**
+   * Directory depth of the upload tree (two shard levels plus the files themselves)
+   */
+  private static final int MAX_DEPTH = 3;
+
+  /**
+   * Number of locks serializing writes, touches, and conditional deletes of the same key
+   */
+  private static final int LOCK_STRIPES = 64;
+
+  private final ReentrantLock[] locks = IntStream.range(0, LOCK_STRIPES)
+    .mapToObj(i -> new ReentrantLock())
+    .toArray(ReentrantLock[]::new);
+
+  @Value("${app.upload.dir}")
+  private String uploadDir;
+
+  private Path uploadRootPath;
+
+  /**
+   * Initializes the upload directory on application startup. Creates the directory if it doesn't
+   * exist.
+   */
+  @PostConstruct
+  void initializeUploadPath() {
+    try {
+      uploadRootPath = Paths.get(uploadDir).toAbsolutePath().normalize();
+      Files.createDirectories(uploadRootPath);
+    } catch (IOException e) {
+      // Log and rethrow as unchecked exception to fail startup
+      log.error("Failed to initialize upload directory: {}", uploadDir, e);
+      throw new IllegalStateException(
+        "Could not initialize upload directory: " + uploadRootPath, e);
+    }
+  }
+
+  /**
+   * Moves the file into the upload directory with an atomic rename, so the served directory never
+   * exposes a partially written image. Falls back to a plain move when the source is on another
+   * file system.
+   */
+  @Override
+  public void put(String key, Path source, String contentType) throws IOException {
+    Path target = resolve(key);
+    Files.createDirectories(target.getParent());
+    ReentrantLock lock = lockFor(key);
+    lock.lock();
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      log.warn("Atomic move not supported from {} to {}, copying instead", source, target);
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean touchIfExists(String key) throws IOException {
+    ReentrantLock lock = lockFor(key);
+    lock.lock();
+    try {
+      Files.setLastModifiedTime(resolve(key), FileTime.from(Instant.now()));
+      return true;
+    } catch (NoSuchFileException e) {
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Checks the modification time and deletes the file under the key's lock, so a concurrent
+   * {@link #touchIfExists} either keeps the file or finds it gone (and the upload stores it again).
+   */
+  @Override
+  public boolean deleteIfModifiedBefore(String key, Instant cutoff) throws IOException {
+    Path file = resolve(key);
+    ReentrantLock lock = lockFor(key);
+    lock.lock();
+    try {
+      return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)
+        && Files.deleteIfExists(file);
+    } catch (NoSuchFileException e) {
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void delete(String key) throws IOException {
+    Files.deleteIfExists(resolve(key));
+  }
+
+  @Override
+  public List<StoredImage> list() throws IOException {
+    List<StoredImage> images = new ArrayList<>();
+    try (Stream<Path> files = Files.walk(uploadRootPath, MAX_DEPTH)) {
+      for (Path file : files.filter(Files::isRegularFile).toList()) {
+        try {
+          images.add(new StoredImage(
+            uploadRootPath.relativize(file).toString().replace('\\', '/'),
+            Files.getLastModifiedTime(file).toInstant()));
+        } catch (NoSuchFileException e) {
+          // Deleted while listing
+        }
+      }
+    }
+    return images;
+  }
+
+  /**
+   * Local files are served by the application, so no presigned URL is available.
+   */
+  @Override
+  public Optional<URI> presignedUrl(String key) {
+    return Optional.empty();
+  }
+
+  private ReentrantLock lockFor(String key) {
+    return locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+  }
+
+  /**
+   * Resolves a key to its file inside the upload directory.
+   *
+   * @param key the image key
+   * @return the absolute path of the file (which may not exist)
+   * @throws IllegalArgumentException if the key would escape the upload directory
+   */
+  public Path resolve(String key) {
+    Path path = uploadRootPath.resolve(key).normalize();
+    if (!path.startsWith(uploadRootPath)) {
+      throw new IllegalArgumentException("Invalid image key: " + key);
+    }
+    return path;
+  }
+}
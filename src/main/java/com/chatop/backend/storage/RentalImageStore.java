@@ -0,0 +1,76 @@
+package com.chatop.backend.storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage backend for rental image files (originals and resized variants).
+ * <p>
+ * Files are addressed by keys relative to the store root, using '/' separators (for example
+ * {@code 3f/a9/3fa9...e41b.jpg}); the public URL of a file is the upload URL followed by its key.
+ * Implementations must be safe for concurrent use.
+ */
+public interface RentalImageStore {
+
+  /**
+   * Stores a file under a key, replacing any existing file. Implementations may move the source
+   * file instead of copying it, so callers must not rely on it afterwards.
+   *
+   * @param key         destination key
+   * @param source      local file to store
+   * @param contentType MIME type of the file
+   * @throws IOException if the file cannot be stored
+   */
+  void put(String key, Path source, String contentType) throws IOException;
+
+  /**
+   * Checks whether a file exists and, if so, refreshes its modification time so that it is
+   * treated as recently written (used when an upload reuses an existing content-addressed file).
+   *
+   * @param key the key to check
+   * @return true if the file exists
+   * @throws IOException if the store cannot be queried
+   */
+  boolean touchIfExists(String key) throws IOException;
+
+  /**
+   * Deletes a file if it exists.
+   *
+   * @param key the key to delete
+   * @throws IOException if the file exists but cannot be deleted
+   */
+  void delete(String key) throws IOException;
+
+  /**
+   * Deletes a file unless it was written or reused at or after a cutoff. The modification time is
+   * read again immediately before deleting, so a file reused by an upload since it was listed (see
+   * {@link #touchIfExists}) is kept.
+   *
+   * @param key    the key to delete
+   * @param cutoff the file is only deleted if it was last modified before this time
+   * @return true if the file was deleted
+   * @throws IOException if the file cannot be checked or deleted
+   */
+  boolean deleteIfModifiedBefore(String key, Instant cutoff) throws IOException;
+
+  /**
+   * Lists every stored file.
+   *
+   * @return the stored files, in no particular order
+   * @throws IOException if the store cannot be listed
+   */
+  List<StoredImage> list() throws IOException;
+
+  /**
+   * Returns a short-lived URL from which clients can download a file directly, bypassing the
+   * application.
+   *
+   * @param key the key of the file
+   * @return the presigned URL, or empty if the store serves files through the application
+   */
+  Optional<URI> presignedUrl(String key);
+}
@@ -0,0 +1,377 @@
+package com.chatop.backend.storage;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+/**
+ * Stores rental images as objects in an S3-compatible bucket, so that every application node sees
+ * the same images. Works with AWS S3 as well as self-hosted stand-ins such as MinIO (set
+ * {@code app.upload.s3.endpoint} and enable path-style access).
+ * <p>
+ * Files larger than the configured part size are sent as multipart uploads, with parts read from
+ * a memory-mapped view of the file and uploaded in parallel. Parts are at least 5MB, so this only
+ * happens when the upload size limit is raised above the part size; with the default 5MB limit,
+ * every image is a single PUT. Clients download images through short-lived presigned URLs, so
+ * image bytes never pass through the application.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.upload.store", havingValue = "s3")
+public class S3RentalImageStore implements RentalImageStore {
+
+  /**
+   * Smallest part size S3 accepts for all but the last part of a multipart upload
+   */
+  private static final long MIN_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+
+  private final S3Client s3Client;
+  private final S3Presigner presigner;
+  private final String bucket;
+  private final long partSize;
+  private final Duration presignDuration;
+  private final ExecutorService partUploadExecutor;
+
+  /**
+   * Creates the S3 clients from configuration.
+   *
+   * @param bucket         bucket holding the images
+   * @param region         bucket region
+   * @param endpoint       custom endpoint (e.g. a MinIO URL), empty for AWS
+   * @param pathStyle      whether to address the bucket in the URL path instead of the host name
+   * @param accessKey      access key, empty to use the default AWS credentials chain
+   * @param secretKey      secret key, empty to use the default AWS credentials chain
+   * @param partSize       size of multipart upload parts (at least 5MB)
+   * @param uploadThreads  number of parts uploaded in parallel
+   * @param presignSeconds lifetime of presigned download URLs in seconds
+   */
+  @Autowired
+  public S3RentalImageStore(
+    @Value("${app.upload.s3.bucket}") String bucket,
+    @Value("${app.upload.s3.region}") String region,
+    @Value("${app.upload.s3.endpoint}") String endpoint,
+    @Value("${app.upload.s3.path-style}") boolean pathStyle,
+    @Value("${app.upload.s3.access-key}") String accessKey,
+    @Value("${app.upload.s3.secret-key}") String secretKey,
+    @Value("${app.upload.s3.part-size}") DataSize partSize,
+    @Value("${app.upload.s3.upload-threads}") int uploadThreads,
+    @Value("${app.upload.s3.presign-seconds}") long presignSeconds) {
+    this(s3Client(region, endpoint, pathStyle, accessKey, secretKey),
+      presigner(region, endpoint, pathStyle, accessKey, secretKey),
+      bucket, partSize, uploadThreads, Duration.ofSeconds(presignSeconds));
+  }
+
+  /**
+   * Creates the store around existing clients, such as an in-process fake in tests.
+   *
+   * @param s3Client        client used for object operations
+   * @param presigner       presigner of download URLs
+   * @param bucket          bucket holding the images
+   * @param partSize        size of multipart upload parts (at least 5MB)
+   * @param uploadThreads   number of parts uploaded in parallel
+   * @param presignDuration lifetime of presigned download URLs
+   */
+  S3RentalImageStore(S3Client s3Client, S3Presigner presigner, String bucket, DataSize partSize,
+    int uploadThreads, Duration presignDuration) {
+    if (partSize.toBytes() < MIN_PART_SIZE) {
+      throw new IllegalArgumentException("S3 part size must be at least 5MB");
+    }
+    this.s3Client = s3Client;
+    this.presigner = presigner;
+    this.bucket = bucket;
+    this.partSize = partSize.toBytes();
+    this.presignDuration = presignDuration;
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.partUploadExecutor = Executors.newFixedThreadPool(uploadThreads, runnable -> {
+      Thread thread = new Thread(runnable, "s3-part-upload-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private static S3Client s3Client(String region, String endpoint, boolean pathStyle,
+    String accessKey, String secretKey) {
+    var builder = S3Client.builder()
+      .region(Region.of(region))
+      .credentialsProvider(credentials(accessKey, secretKey))
+      .serviceConfiguration(serviceConfiguration(pathStyle));
+    if (StringUtils.hasText(endpoint)) {
+      builder.endpointOverride(URI.create(endpoint));
+    }
+    return builder.build();
+  }
+
+  private static S3Presigner presigner(String region, String endpoint, boolean pathStyle,
+    String accessKey, String secretKey) {
+    var builder = S3Presigner.builder()
+      .region(Region.of(region))
+      .credentialsProvider(credentials(accessKey, secretKey))
+      .serviceConfiguration(serviceConfiguration(pathStyle));
+    if (StringUtils.hasText(endpoint)) {
+      builder.endpointOverride(URI.create(endpoint));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns static credentials when an access key is configured, the default AWS chain otherwise.
+   */
+  private static AwsCredentialsProvider credentials(String accessKey, String secretKey) {
+    return StringUtils.hasText(accessKey)
+      ? StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey))
+      : DefaultCredentialsProvider.create();
+  }
+
+  private static S3Configuration serviceConfiguration(boolean pathStyle) {
+    return S3Configuration.builder()
+      .pathStyleAccessEnabled(pathStyle)
+      .build();
+  }
+
+  @Override
+  public void put(String key, Path source, String contentType) throws IOException {
+    long size = Files.size(source);
+    try {
+      if (size <= partSize) {
+        s3Client.putObject(request -> request.bucket(bucket).key(key).contentType(contentType),
+          RequestBody.fromFile(source));
+      } else {
+        putMultipart(key, source, contentType, size);
+      }
+    } catch (SdkException e) {
+      throw new IOException("Failed to upload " + key + " to bucket " + bucket, e);
+    }
+  }
+
+  /**
+   * Refreshes the object's last-modified time by copying it onto itself (S3 has no in-place
+   * timestamp update). S3 only accepts such a copy when it replaces the metadata, so the object's
+   * current metadata and headers are sent back unchanged.
+   */
+  @Override
+  public boolean touchIfExists(String key) throws IOException {
+    try {
+      HeadObjectResponse head = s3Client.headObject(request -> request.bucket(bucket).key(key));
+      s3Client.copyObject(request -> request
+        .sourceBucket(bucket).sourceKey(key)
+        .destinationBucket(bucket).destinationKey(key)
+        .metadataDirective(MetadataDirective.REPLACE)
+        .metadata(head.metadata())
+        .contentType(head.contentType())
+        .cacheControl(head.cacheControl())
+        .contentDisposition(head.contentDisposition())
+        .contentEncoding(head.contentEncoding())
+        .contentLanguage(head.contentLanguage()));
+      return true;
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) {
+        return false;
+      }
+      throw new IOException("Failed to check " + key + " in bucket " + bucket, e);
+    } catch (SdkException e) {
+      throw new IOException("Failed to check " + key + " in bucket " + bucket, e);
+    }
+  }
+
+  @Override
+  public void delete(String key) throws IOException {
+    try {
+      s3Client.deleteObject(request -> request.bucket(bucket).key(key));
+    } catch (SdkException e) {
+      throw new IOException("Failed to delete " + key + " from bucket " + bucket, e);
+    }
+  }
+
+  /**
+   * Reads the object's last-modified time with a HEAD request right before deleting it. S3 has no
+   * conditional delete on the modification time, so a reuse landing between the two requests can
+   * still lose the object; the window is one round trip instead of a whole sweep.
+   */
+  @Override
+  public boolean deleteIfModifiedBefore(String key, Instant cutoff) throws IOException {
+    try {
+      HeadObjectResponse head = s3Client.headObject(request -> request.bucket(bucket).key(key));
+      if (!head.lastModified().isBefore(cutoff)) {
+        return false;
+      }
+      s3Client.deleteObject(request -> request.bucket(bucket).key(key));
+      return true;
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) {
+        return false;
+      }
+      throw new IOException("Failed to delete " + key + " from bucket " + bucket, e);
+    } catch (SdkException e) {
+      throw new IOException("Failed to delete " + key + " from bucket " + bucket, e);
+    }
+  }
+
+  @Override
+  public List<StoredImage> list() throws IOException {
+    try {
+      List<StoredImage> images = new ArrayList<>();
+      s3Client.listObjectsV2Paginator(request -> request.bucket(bucket)).contents()
+        .forEach(object -> images.add(new StoredImage(object.key(), object.lastModified())));
+      return images;
+    } catch (SdkException e) {
+      throw new IOException("Failed to list bucket " + bucket, e);
+    }
+  }
+
+  @Override
+  public Optional<URI> presignedUrl(String key) {
+    try {
+      return Optional.of(presigner.presignGetObject(request -> request
+          .signatureDuration(presignDuration)
+          .getObjectRequest(object -> object.bucket(bucket).key(key)))
+        .url().toURI());
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException("Invalid presigned URL for " + key, e);
+    }
+  }
+
+  /**
+   * Closes the S3 clients and stops the part upload threads on shutdown.
+   */
+  @PreDestroy
+  void close() {
+    partUploadExecutor.shutdownNow();
+    presigner.close();
+    s3Client.close();
+  }
+
+  /**
+   * Uploads a file as a multipart upload, sending its parts in parallel. Each part is streamed from
+   * a memory-mapped slice of the file, so parts are not copied onto the heap as a whole. The upload
+   * is aborted if any part fails, so no incomplete parts are left billed in the bucket.
+   */
+  private void putMultipart(String key, Path source, String contentType, long size)
+    throws IOException {
+    String uploadId = s3Client.createMultipartUpload(request -> request
+      .bucket(bucket).key(key).contentType(contentType)).uploadId();
+
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+      int partNumber = 1;
+      for (long offset = 0; offset < size; offset += partSize, partNumber++) {
+        MappedByteBuffer slice =
+          channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(partSize, size - offset));
+        int number = partNumber;
+        parts.add(CompletableFuture.supplyAsync(() -> {
+          String etag = s3Client.uploadPart(request -> request
+              .bucket(bucket).key(key).uploadId(uploadId).partNumber(number)
+              .contentLength((long) slice.remaining()),
+            // A new stream per attempt, so that retries resend the part from its start
+            RequestBody.fromContentProvider(() -> new ByteBufferInputStream(slice.duplicate()),
+              slice.remaining(), "application/octet-stream")).eTag();
+          return CompletedPart.builder().partNumber(number).eTag(etag).build();
+        }, partUploadExecutor));
+      }
+
+      List<CompletedPart> completedParts = CompletableFuture
+        .allOf(parts.toArray(CompletableFuture[]::new))
+        .thenApply(done -> parts.stream()
+          .map(CompletableFuture::join)
+          .sorted(Comparator.comparing(CompletedPart::partNumber))
+          .toList())
+        .join();
+
+      s3Client.completeMultipartUpload(request -> request
+        .bucket(bucket).key(key).uploadId(uploadId)
+        .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build()));
+      log.debug("Uploaded {} to bucket {} in {} parts", key, bucket, completedParts.size());
+
+    } catch (IOException | CompletionException | SdkException e) {
+      abortQuietly(key, uploadId);
+      if (e instanceof CompletionException && e.getCause() instanceof SdkException sdk) {
+        throw sdk;
+      }
+      throw e;
+    }
+  }
+
+  private void abortQuietly(String key, String uploadId) {
+    try {
+      s3Client.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+    } catch (SdkException e) {
+      log.warn("Failed to abort multipart upload of {}: {}", key, e.getMessage());
+    }
+  }
+
+  /**
+   * Reads a byte buffer (here a memory-mapped file slice) as a stream, without copying it.
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package com.chatop.backend.storage;
+
+import java.time.Instant;
+
+/**
+ * A file held by a {@link RentalImageStore}.
+ *
+ * @param key          path of the file relative to the store root, using '/' separators
+ * @param lastModified time the file was written or last reused
+ */
+public record StoredImage(String key, Instant lastModified) {
+
+}
@@ -0,0 +1,15 @@
+/**
+ * Storage backends for uploaded rental images.
+ * <p>
+ * {@link com.chatop.backend.storage.RentalImageStore} abstracts where image files live, so that
+ * the upload pipeline does not depend on the local file system. The implementation is selected
+ * with {@code app.upload.store}:
+ * <ul>
+ *   <li>{@link com.chatop.backend.storage.LocalRentalImageStore} — files under
+ *   {@code app.upload.dir}, served directly by the application</li>
+ *   <li>{@link com.chatop.backend.storage.S3RentalImageStore} — objects in an S3-compatible bucket
+ *   (AWS S3, MinIO, ...), served through presigned URL redirects so that several application
+ *   nodes share the same images</li>
+ * </ul>
+ */
+package com.chatop.backend.storage;
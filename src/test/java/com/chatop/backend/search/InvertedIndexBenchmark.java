@@ -0,0 +1,120 @@
+package com.chatop.backend.search;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of {@link InvertedIndex#search(String, int)} over 100,000 synthetic French listings,
+ * weighted like rentals (name three times the description), for one page of 20 results:
+ * <ul>
+ *   <li>{@code appartement}: a frequent term, the type of one listing in fourteen;</li>
+ *   <li>{@code maison jardin}: two common terms, intersected;</li>
+ *   <li>{@code studio lumineux proche gare}: four terms, as typed in a detailed search;</li>
+ *   <li>{@code appartement ba}: search-as-you-type, the last word expanding to every term it
+ *   begins;</li>
+ *   <li>{@code moulin}: a rare term.</li>
+ * </ul>
+ * Listings are generated from a fixed seed, so every run indexes the same corpus. Run with the
+ * command in {@code perf/README.md}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvertedIndexBenchmark {
+
+  private static final int LISTINGS = 100_000;
+  private static final int PAGE_SIZE = 20;
+
+  private static final String[] TYPES = {
+    "Appartement", "Studio", "Maison", "Villa", "Loft", "Duplex", "Chambre", "Gîte", "Chalet",
+    "Péniche", "Mas", "Longère", "Maisonnette", "Bastide"};
+  private static final String[] ADJECTIVES = {
+    "lumineux", "spacieux", "calme", "rénové", "meublé", "charmant", "moderne", "ancien",
+    "familial", "cosy", "traversant", "confortable", "neuf", "atypique", "ensoleillé"};
+  private static final String[] PLACES = {
+    "proche de la gare", "en centre-ville", "vue sur mer", "au bord du lac", "près des plages",
+    "dans le vieux port", "à la campagne", "en montagne", "près du métro", "quartier calme",
+    "face au parc", "au pied des pistes", "en bord de Loire", "sur les quais"};
+  private static final String[] CITIES = {
+    "Paris", "Lyon", "Marseille", "Bordeaux", "Nantes", "Lille", "Toulouse", "Nice", "Rennes",
+    "Strasbourg", "Montpellier", "Grenoble", "Annecy", "Biarritz", "Dijon", "Avignon", "Brest",
+    "Tours", "Angers", "Reims", "Rouen", "Caen", "Nancy", "Metz", "Limoges", "Perpignan"};
+  private static final String[] DESCRIPTION_WORDS = {
+    "cuisine", "équipée", "salon", "séjour", "chambre", "chambres", "salle", "bain", "douche",
+    "balcon", "terrasse", "jardin", "piscine", "parking", "garage", "cave", "ascenseur",
+    "étage", "dernier", "rez-de-chaussée", "vue", "dégagée", "exposé", "sud", "ouest", "est",
+    "commerces", "écoles", "transports", "proximité", "immédiate", "minutes", "à", "pied",
+    "de", "la", "le", "les", "des", "du", "avec", "et", "en", "pour", "dans", "idéal", "couple",
+    "famille", "étudiant", "télétravail", "fibre", "wifi", "lave-linge", "lave-vaisselle",
+    "chauffage", "climatisation", "cheminée", "poutres", "parquet", "carrelage", "moulures",
+    "hauteur", "sous", "plafond", "double", "vitrage", "volets", "électriques", "calme",
+    "lumineux", "spacieux", "rénové", "récemment", "refait", "neuf", "ancien", "charme",
+    "caractère", "authentique", "vieilles", "pierres", "mezzanine", "bureau", "dressing",
+    "placards", "rangements", "buanderie", "cellier", "véranda", "pergola", "barbecue",
+    "potager", "verger", "arboré", "clos", "portail", "sécurisé", "digicode", "gardien",
+    "résidence", "standing", "copropriété", "charges", "comprises", "disponible",
+    "immédiatement", "location", "saisonnière", "courte", "durée", "semaine", "mois", "linge",
+    "fourni",
+    "animaux", "acceptés", "non", "fumeur", "accès", "handicapé", "plain-pied", "gare",
+    "plage", "mer", "montagne", "ski", "randonnée", "vélo", "lac", "rivière", "forêt",
+    "vignes", "village", "marché", "restaurants", "boulangerie", "centre", "historique"};
+
+  @Param({"appartement", "maison jardin", "studio lumineux proche gare", "appartement ba",
+    "moulin"})
+  private String query;
+
+  private InvertedIndex index;
+
+  @Setup
+  public void setUp() {
+    index = new InvertedIndex(3, 1);
+    Random random = new Random(42);
+    for (int key = 1; key <= LISTINGS; key++) {
+      index.put(key, name(random), description(random, key));
+    }
+  }
+
+  @Benchmark
+  public long[] search() {
+    return index.search(query, PAGE_SIZE);
+  }
+
+  private static String name(Random random) {
+    return pick(random, TYPES) + " " + pick(random, ADJECTIVES) + " " + pick(random, PLACES)
+      + " - " + pick(random, CITIES);
+  }
+
+  /**
+   * Returns a description of 30 to 90 words; one listing in 10,000 mentions a mill.
+   */
+  private static String description(Random random, int key) {
+    StringBuilder description = new StringBuilder();
+    int words = 30 + random.nextInt(61);
+    for (int i = 0; i < words; i++) {
+      description.append(pick(random, DESCRIPTION_WORDS)).append(i % 12 == 11 ? ". " : " ");
+    }
+    description.append(random.nextInt(15, 150)).append(" m², ").append(pick(random, CITIES));
+    if (key % 10_000 == 0) {
+      description.append(", ancien moulin");
+    }
+    return description.toString();
+  }
+
+  private static String pick(Random random, String[] words) {
+    return words[random.nextInt(words.length)];
+  }
+}
@@ -0,0 +1,119 @@
+package com.chatop.backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * BM25 ranking, required query words, and prefix matching of the last query word.
+ */
+class InvertedIndexTests {
+
+  private InvertedIndex index;
+
+  @BeforeEach
+  void setUp() {
+    // Names weigh three times as much as descriptions, as for rentals
+    index = new InvertedIndex(3, 1);
+  }
+
+  @Test
+  void ranksTermsInHeavierFieldsFirst() {
+    index.put(1, "Studio", "Studio calme avec vue sur la plage");
+    index.put(2, "Villa plage", "Grande villa avec jardin");
+    index.put(3, "Appartement", "Appartement familial");
+
+    assertThat(index.search("plage", 10)).containsExactly(2, 1);
+  }
+
+  @Test
+  void ranksFrequentTermsFirstAndShorterDocumentsFirst() {
+    index.put(1, "Maison", "jardin arboré");
+    index.put(2, "Maison", "jardin potager et jardin fleuri");
+    index.put(3, "Maison", "jardin avec terrasse, garage, cave, grenier et piscine chauffée");
+
+    assertThat(index.search("jardin", 10)).containsExactly(2, 1, 3);
+  }
+
+  @Test
+  void ranksRareTermsAboveCommonOnes() {
+    index.put(1, "Loft", "bain");
+    index.put(2, "Loft", "balcon");
+    index.put(3, "Loft", "balcon");
+    index.put(4, "Loft", "balcon");
+
+    // The prefix matches one term in each document, of equal length and frequency
+    assertThat(index.search("ba", 10)).startsWith(1).hasSize(4);
+  }
+
+  @Test
+  void requiresEveryQueryWord() {
+    index.put(1, "Villa avec piscine", "Proche de la plage");
+    index.put(2, "Villa", "Jardin");
+    index.put(3, "Piscine municipale", "Plage");
+
+    assertThat(index.search("villa piscine", 10)).containsExactly(1);
+    assertThat(index.search("villa grenier", 10)).isEmpty();
+  }
+
+  @Test
+  void matchesTheLastWordAsAPrefixBelowExactMatches() {
+    index.put(1, "Appartement lumineux", null);
+    index.put(2, "Appart lumineux", null);
+    index.put(3, "Loft lumineux", null);
+
+    assertThat(index.search("lumineux appart", 10)).containsExactly(2, 1);
+    assertThat(index.search("appartem", 10)).containsExactly(1);
+  }
+
+  @Test
+  void matchesOnlyTheLastWordAsAPrefix() {
+    index.put(1, "Appartement lumineux", null);
+
+    assertThat(index.search("appart lumineux", 10)).isEmpty();
+    assertThat(index.search("lumineux appart", 10)).containsExactly(1);
+  }
+
+  @Test
+  void doesNotExpandSingleLetters() {
+    index.put(1, "Appartement", null);
+
+    assertThat(index.search("a", 10)).isEmpty();
+    assertThat(index.search("ap", 10)).containsExactly(1);
+  }
+
+  @Test
+  void ignoresAccentsCaseAndPluralsInQueries() {
+    index.put(1, "Château", "Grandes chambres");
+
+    assertThat(index.search("CHATEAU chambre", 10)).containsExactly(1);
+    assertThat(index.search("châteaux", 10)).containsExactly(1);
+  }
+
+  @Test
+  void ranksEqualScoresByDescendingKey() {
+    index.put(1, "Studio", null);
+    index.put(3, "Studio", null);
+    index.put(2, "Studio", null);
+
+    assertThat(index.search("studio", 2)).containsExactly(3, 2);
+  }
+
+  @Test
+  void replacesDocumentsWithTheSameKey() {
+    index.put(1, "Studio", "Centre ville");
+    index.put(1, "Loft", "Centre ville");
+
+    assertThat(index.search("studio", 10)).isEmpty();
+    assertThat(index.search("loft", 10)).containsExactly(1);
+    assertThat(index.size()).isEqualTo(1);
+  }
+
+  @Test
+  void rejectsDocumentsWithTheWrongNumberOfFields() {
+    assertThatThrownBy(() -> index.put(1, "Studio"))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,50 @@
+package com.chatop.backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Folding, stop words and plural stripping of listing text and queries.
+ */
+class TextAnalyzerTests {
+
+  @Test
+  void foldsCaseAccentsAndLigatures() {
+    assertThat(TextAnalyzer.terms("Château ÉTÉ cœur Ægir Straße"))
+      .containsExactly("chateau", "ete", "coeur", "aegir", "strasse");
+  }
+
+  @Test
+  void splitsOnPunctuationAndKeepsDigits() {
+    assertThat(TextAnalyzer.terms("T3, 65m2 - rez-de-chaussée!"))
+      .containsExactly("t3", "65m2", "rez", "chaussee");
+  }
+
+  @Test
+  void dropsStopWordsAndElidedLetters() {
+    assertThat(TextAnalyzer.terms("L'appartement de la gare, près d'un parc and the sea"))
+      .containsExactly("appartement", "gare", "pre", "parc", "sea");
+  }
+
+  @Test
+  void stripsPluralsFromLongerTerms() {
+    assertThat(TextAnalyzer.terms("Maisons anciennes bateaux bus gaz"))
+      .containsExactly("maison", "ancienne", "bateau", "bus", "gaz");
+    assertThat(TextAnalyzer.terms("maison")).isEqualTo(TextAnalyzer.terms("maisons"));
+  }
+
+  @Test
+  void keepsTheLastQueryWordEvenIfItIsAStopWord() {
+    assertThat(TextAnalyzer.queryTerms("maison de")).containsExactly("maison", "de");
+    assertThat(TextAnalyzer.terms("maison de")).containsExactly("maison");
+    assertThat(TextAnalyzer.queryTerms("de maison")).containsExactly("maison");
+  }
+
+  @Test
+  void returnsNoTermsForEmptyText() {
+    assertThat(TextAnalyzer.terms(null)).isEmpty();
+    assertThat(TextAnalyzer.terms("")).isEmpty();
+    assertThat(TextAnalyzer.queryTerms(" ,; ")).isEmpty();
+  }
+}
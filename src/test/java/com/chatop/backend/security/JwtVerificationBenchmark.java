@@ -0,0 +1,104 @@
+package com.chatop.backend.security;
+
+import com.chatop.backend.model.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Cost of authenticating one request's bearer token, as done by {@link JwtAuthenticationFilter}:
+ * <ul>
+ *   <li>{@code perClaimParsing}: the former filter, which rebuilt the key and parser and verified
+ *   the signature for each of the four claims it read;</li>
+ *   <li>{@code singleVerification}: {@link JwtService#extractAllClaims(String)} with the shared
+ *   parser, verifying once;</li>
+ *   <li>{@code cachedVerification}: the same with the {@link VerifiedTokenCache} enabled, after
+ *   the first request.</li>
+ * </ul>
+ * Run with the command in {@code perf/README.md}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+  private static final String SECRET =
+    Base64.getEncoder().encodeToString("benchmark-secret-key-of-at-least-256-bits!".getBytes());
+  private static final long EXPIRATION_MILLIS = 3_600_000;
+
+  private JwtService uncachedService;
+  private JwtService cachedService;
+  private String token;
+
+  @Setup
+  public void setUp() {
+    uncachedService = jwtService(false);
+    cachedService = jwtService(true);
+
+    User user = new User();
+    user.setId(42L);
+    user.setName("Jeanne Martin");
+    user.setEmail("jeanne.martin@example.com");
+    token = uncachedService.generateAccessToken(user);
+    cachedService.extractAllClaims(token);
+  }
+
+  @Benchmark
+  public boolean perClaimParsing() {
+    String email = parse(token).getSubject();
+    boolean valid = email.equals(parse(token).getSubject())
+      && !parse(token).getExpiration().before(new Date());
+    return valid && parse(token).getIssuedAt() != null;
+  }
+
+  @Benchmark
+  public boolean singleVerification() {
+    Claims claims = uncachedService.extractAllClaims(token);
+    return uncachedService.isTokenValid(claims, claims.getSubject());
+  }
+
+  @Benchmark
+  public boolean cachedVerification() {
+    Claims claims = cachedService.extractAllClaims(token);
+    return cachedService.isTokenValid(claims, claims.getSubject());
+  }
+
+  /**
+   * Verifies a token the way the former JwtService did for every claim.
+   */
+  private static Claims parse(String token) {
+    return Jwts.parserBuilder()
+      .setSigningKey(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET)))
+      .build()
+      .parseClaimsJws(token)
+      .getBody();
+  }
+
+  private static JwtService jwtService(boolean cacheEnabled) {
+    VerifiedTokenCache cache =
+      new VerifiedTokenCache(cacheEnabled, 10_000, EXPIRATION_MILLIS, new SimpleMeterRegistry());
+    JwtService service = new JwtService(cache);
+    ReflectionTestUtils.setField(service, "secretKey", SECRET);
+    ReflectionTestUtils.setField(service, "jwtExpiration", EXPIRATION_MILLIS);
+    service.initializeSigningKey();
+    return service;
+  }
+}
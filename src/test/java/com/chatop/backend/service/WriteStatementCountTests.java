@@ -0,0 +1,177 @@
+package com.chatop.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+import com.chatop.backend.dto.MessageRequest;
+import com.chatop.backend.dto.RentalCreateRequest;
+import com.chatop.backend.dto.SingleRentalResponse;
+import com.chatop.backend.model.Rental;
+import com.chatop.backend.model.User;
+import com.chatop.backend.repository.RentalVersion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Counts the SQL statements run by message and rental creation, which reference the user and rental
+ * by ID instead of loading them (message creation reads the rental owner from the rental cache, at
+ * the cost of one projection query when the rental is not cached).
+ */
+@DataJpaTest(properties = {
+  "spring.jpa.hibernate.ddl-auto=create-drop",
+  "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({MessageService.class, RentalService.class})
+class WriteStatementCountTests {
+
+  @Autowired
+  private TestEntityManager entityManager;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private MessageService messageService;
+
+  @Autowired
+  private RentalService rentalService;
+
+  @MockitoBean
+  private MessageIngestionService messageIngestionService;
+
+  @MockitoBean
+  private RentalImageStorageService rentalImageStorageService;
+
+  @MockitoBean
+  private RentalImagePipeline rentalImagePipeline;
+
+  @MockitoBean
+  private RentalImageVariants rentalImageVariants;
+
+  @MockitoBean
+  private RentalResponseCache rentalResponseCache;
+
+  @MockitoBean
+  private RentalSearchIndex rentalSearchIndex;
+
+  @MockitoBean
+  private ObjectMapper objectMapper;
+
+  private Statistics statistics;
+
+  private User owner;
+
+  private Rental rental;
+
+  @BeforeEach
+  void setUp() {
+    owner = new User();
+    owner.setEmail("owner@test.com");
+    owner.setName("Owner");
+    owner.setPassword("hash");
+    entityManager.persist(owner);
+
+    rental = new Rental();
+    rental.setName("Studio");
+    rental.setSurface(BigDecimal.TEN);
+    rental.setPrice(BigDecimal.ONE);
+    rental.setDescription("Description");
+    rental.setOwner(owner);
+    entityManager.persist(rental);
+    entityManager.flush();
+    entityManager.clear();
+
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @Test
+  void sendMessageRunsASingleInsert() {
+    cacheRental(rental.getId());
+    messageService.sendMessage(new MessageRequest(rental.getId(), "Hello"), owner);
+    entityManager.flush();
+
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+    assertThat(statistics.getEntityLoadCount()).isZero();
+  }
+
+  @Test
+  void sendMessageWithRentalNotCachedReadsItOnceThenInserts() {
+    loadRentalsThroughCache();
+    messageService.sendMessage(new MessageRequest(rental.getId(), "Hello"), owner);
+    entityManager.flush();
+
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+    assertThat(statistics.getEntityLoadCount()).isZero();
+  }
+
+  @Test
+  void sendMessageToMissingRentalIsRejectedByTheForeignKey() {
+    // Cached, but deleted since
+    cacheRental(rental.getId() + 1000);
+    MessageRequest request = new MessageRequest(rental.getId() + 1000, "Hello");
+
+    assertThatThrownBy(() -> messageService.sendMessage(request, owner))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+  }
+
+  @Test
+  void createRentalWithContentAddressedPictureRunsASingleInsert() {
+    SpooledImage spooledImage = new SpooledImage(Path.of("upload.tmp"), "image/png", 3, "abcd");
+    when(rentalImageStorageService.isContentAddressed()).thenReturn(true);
+    when(rentalImageStorageService.spoolRentalImage(any())).thenReturn(spooledImage);
+    when(rentalImageStorageService.storeSpooledImage(any(), isNull()))
+      .thenReturn(new StoredPicture("/rental_images/ab/cd/abcd.png", "200,640"));
+
+    RentalCreateRequest request = new RentalCreateRequest();
+    request.setName("Loft");
+    request.setSurface(BigDecimal.TEN);
+    request.setPrice(BigDecimal.ONE);
+    request.setDescription("Description");
+    request.setPicture(new MockMultipartFile("picture", new byte[] {1, 2, 3}));
+    rentalService.createRental(request, owner);
+    entityManager.flush();
+
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+    assertThat(statistics.getEntityUpdateCount()).isZero();
+  }
+
+  /**
+   * Makes every rental lookup miss the cache and run the service's loader.
+   */
+  @SuppressWarnings("unchecked")
+  private void loadRentalsThroughCache() {
+    when(rentalResponseCache.get(any(), any())).thenAnswer(invocation ->
+      ((Function<Long, VersionedRental>) invocation.getArgument(1))
+        .apply(invocation.getArgument(0)));
+  }
+
+  private void cacheRental(Long id) {
+    SingleRentalResponse response = new SingleRentalResponse(id, "Studio", BigDecimal.TEN,
+      BigDecimal.ONE, List.of(), "Description", owner.getId(), null, null);
+    when(rentalResponseCache.get(eq(id), any()))
+      .thenReturn(new VersionedRental(response, new RentalVersion(1L, null)));
+  }
+}
@@ -0,0 +1,206 @@
+package com.chatop.backend.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+/**
+ * In-process stand-in for a single S3 bucket, implementing the operations
+ * {@link S3RentalImageStore} uses with S3's semantics: objects keep their headers and user
+ * metadata, copying an object onto itself requires replacing its metadata, and multipart uploads
+ * only become objects once completed. Parts can be made to fail to exercise aborts.
+ */
+class InMemoryS3Client implements S3Client {
+
+  /**
+   * A stored object with the headers S3 keeps alongside it.
+   */
+  record StoredObject(byte[] content, String contentType, String cacheControl,
+    Map<String, String> metadata, Instant lastModified) {
+  }
+
+  private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+  private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+  private final Map<String, String> uploadContentTypes = new ConcurrentHashMap<>();
+  private final Set<String> abortedUploads = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger putRequests = new AtomicInteger();
+  private volatile int failingPartNumber;
+
+  Map<String, StoredObject> objects() {
+    return objects;
+  }
+
+  Map<String, Map<Integer, byte[]>> pendingUploads() {
+    return uploads;
+  }
+
+  Set<String> abortedUploads() {
+    return abortedUploads;
+  }
+
+  int putRequests() {
+    return putRequests.get();
+  }
+
+  void failPart(int partNumber) {
+    failingPartNumber = partNumber;
+  }
+
+  void store(String key, StoredObject object) {
+    objects.put(key, object);
+  }
+
+  @Override
+  public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+    putRequests.incrementAndGet();
+    objects.put(request.key(), new StoredObject(read(body), request.contentType(),
+      request.cacheControl(), Map.copyOf(request.metadata()), Instant.now()));
+    return PutObjectResponse.builder().build();
+  }
+
+  @Override
+  public HeadObjectResponse headObject(HeadObjectRequest request) {
+    StoredObject object = find(request.key());
+    return HeadObjectResponse.builder()
+      .contentLength((long) object.content().length)
+      .contentType(object.contentType())
+      .cacheControl(object.cacheControl())
+      .metadata(object.metadata())
+      .lastModified(object.lastModified())
+      .build();
+  }
+
+  @Override
+  public CopyObjectResponse copyObject(CopyObjectRequest request) {
+    StoredObject source = find(request.sourceKey());
+    boolean replace = request.metadataDirective() == MetadataDirective.REPLACE;
+    if (request.sourceKey().equals(request.destinationKey()) && !replace) {
+      throw error(400, "This copy request is illegal because it is trying to copy an object to "
+        + "itself without changing the object's metadata");
+    }
+    objects.put(request.destinationKey(), replace
+      ? new StoredObject(source.content(), request.contentType(), request.cacheControl(),
+        Map.copyOf(request.metadata()), Instant.now())
+      : new StoredObject(source.content(), source.contentType(), source.cacheControl(),
+        source.metadata(), Instant.now()));
+    return CopyObjectResponse.builder().build();
+  }
+
+  @Override
+  public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+    objects.remove(request.key());
+    return DeleteObjectResponse.builder().build();
+  }
+
+  @Override
+  public CreateMultipartUploadResponse createMultipartUpload(
+    CreateMultipartUploadRequest request) {
+    String uploadId = UUID.randomUUID().toString();
+    uploads.put(uploadId, new ConcurrentSkipListMap<>());
+    uploadContentTypes.put(uploadId, request.contentType());
+    return CreateMultipartUploadResponse.builder().uploadId(uploadId).build();
+  }
+
+  @Override
+  public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+    if (request.partNumber() == failingPartNumber) {
+      throw error(500, "Part " + request.partNumber() + " failed");
+    }
+    byte[] content = read(body);
+    if (content.length != request.contentLength()) {
+      throw error(400, "Part length does not match Content-Length");
+    }
+    upload(request.uploadId()).put(request.partNumber(), content);
+    return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+  }
+
+  @Override
+  public CompleteMultipartUploadResponse completeMultipartUpload(
+    CompleteMultipartUploadRequest request) {
+    Map<Integer, byte[]> parts = upload(request.uploadId());
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    List<CompletedPart> completedParts = request.multipartUpload().parts();
+    for (CompletedPart part : completedParts) {
+      content.writeBytes(parts.get(part.partNumber()));
+    }
+    objects.put(request.key(), new StoredObject(content.toByteArray(),
+      uploadContentTypes.remove(request.uploadId()), null, Map.of(), Instant.now()));
+    uploads.remove(request.uploadId());
+    return CompleteMultipartUploadResponse.builder().build();
+  }
+
+  @Override
+  public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+    uploads.remove(request.uploadId());
+    uploadContentTypes.remove(request.uploadId());
+    abortedUploads.add(request.uploadId());
+    return AbortMultipartUploadResponse.builder().build();
+  }
+
+  @Override
+  public String serviceName() {
+    return SERVICE_NAME;
+  }
+
+  @Override
+  public void close() {
+  }
+
+  private StoredObject find(String key) {
+    StoredObject object = objects.get(key);
+    if (object == null) {
+      throw error(404, "Not Found");
+    }
+    return object;
+  }
+
+  private Map<Integer, byte[]> upload(String uploadId) {
+    Map<Integer, byte[]> parts = uploads.get(uploadId);
+    if (parts == null) {
+      throw error(404, "No such upload");
+    }
+    return parts;
+  }
+
+  private static byte[] read(RequestBody body) {
+    try (InputStream stream = body.contentStreamProvider().newStream()) {
+      return stream.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static S3Exception error(int status, String message) {
+    return (S3Exception) S3Exception.builder().statusCode(status).message(message).build();
+  }
+}
@@ -0,0 +1,124 @@
+package com.chatop.backend.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.chatop.backend.storage.InMemoryS3Client.StoredObject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+/**
+ * Uploads and refreshes images against an in-process bucket: single PUTs, multipart uploads
+ * (reached here with the minimum part size) and their abort, and the self-copy refresh.
+ */
+class S3RentalImageStoreTests {
+
+  private static final String BUCKET = "rental-images";
+
+  @TempDir
+  private Path directory;
+
+  private InMemoryS3Client s3Client;
+
+  private S3RentalImageStore store;
+
+  @BeforeEach
+  void setUp() {
+    s3Client = new InMemoryS3Client();
+    S3Presigner presigner = S3Presigner.builder()
+      .region(Region.EU_WEST_3)
+      .credentialsProvider(StaticCredentialsProvider.create(
+        AwsBasicCredentials.create("access-key", "secret-key")))
+      .build();
+    store = new S3RentalImageStore(s3Client, presigner, BUCKET, DataSize.ofMegabytes(5), 2,
+      Duration.ofMinutes(10));
+  }
+
+  @AfterEach
+  void tearDown() {
+    store.close();
+  }
+
+  @Test
+  void putsFilesUpToThePartSizeInOneRequest() throws IOException {
+    byte[] content = randomBytes(300_000);
+
+    store.put("rentals/1.webp", file(content), "image/webp");
+
+    StoredObject stored = s3Client.objects().get("rentals/1.webp");
+    assertThat(stored.content()).isEqualTo(content);
+    assertThat(stored.contentType()).isEqualTo("image/webp");
+    assertThat(s3Client.putRequests()).isEqualTo(1);
+  }
+
+  @Test
+  void uploadsLargerFilesInParts() throws IOException {
+    byte[] content = randomBytes((int) DataSize.ofMegabytes(11).toBytes() + 123);
+
+    store.put("rentals/2.jpg", file(content), "image/jpeg");
+
+    StoredObject stored = s3Client.objects().get("rentals/2.jpg");
+    assertThat(stored.content()).isEqualTo(content);
+    assertThat(stored.contentType()).isEqualTo("image/jpeg");
+    assertThat(s3Client.putRequests()).isZero();
+    assertThat(s3Client.pendingUploads()).isEmpty();
+  }
+
+  @Test
+  void abortsTheMultipartUploadWhenAPartFails() throws IOException {
+    s3Client.failPart(2);
+    Path source = file(randomBytes((int) DataSize.ofMegabytes(11).toBytes()));
+
+    assertThatThrownBy(() -> store.put("rentals/3.jpg", source, "image/jpeg"))
+      .isInstanceOf(IOException.class);
+
+    assertThat(s3Client.objects()).doesNotContainKey("rentals/3.jpg");
+    assertThat(s3Client.pendingUploads()).isEmpty();
+    assertThat(s3Client.abortedUploads()).hasSize(1);
+  }
+
+  @Test
+  void touchKeepsTheObjectHeadersAndMetadata() throws IOException {
+    Instant modified = Instant.now().minus(Duration.ofDays(3));
+    s3Client.store("rentals/4.webp", new StoredObject(new byte[] {1, 2, 3}, "image/webp",
+      "public, max-age=86400", Map.of("rental-id", "4"), modified));
+
+    assertThat(store.touchIfExists("rentals/4.webp")).isTrue();
+
+    StoredObject touched = s3Client.objects().get("rentals/4.webp");
+    assertThat(touched.content()).containsExactly(1, 2, 3);
+    assertThat(touched.contentType()).isEqualTo("image/webp");
+    assertThat(touched.cacheControl()).isEqualTo("public, max-age=86400");
+    assertThat(touched.metadata()).containsExactlyEntriesOf(Map.of("rental-id", "4"));
+    assertThat(touched.lastModified()).isAfter(modified);
+  }
+
+  @Test
+  void touchReportsMissingObjects() throws IOException {
+    assertThat(store.touchIfExists("rentals/missing.webp")).isFalse();
+  }
+
+  private Path file(byte[] content) throws IOException {
+    return Files.write(Files.createTempFile(directory, "upload", ".tmp"), content);
+  }
+
+  private static byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+}